@@ -1,31 +1,59 @@
 package com.example.client;
 
+import com.example.config.HttpClientProperties;
 import com.example.dto.catalog.CategoryDto;
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.catalog.ProductDto;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.util.List;
 import java.util.Optional;
 
 @Component
 public class CatalogClient {
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
 
     private final RestTemplate restTemplate;
     private final String catalogUrl;
+    private final CatalogResponseCache responseCache;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
+    // Формат, в котором кэшируемые ответы запрашиваются у каталога и хранятся: тот же, что у RestTemplate
+    private final MediaType cachedMediaType;
 
     public CatalogClient(RestTemplate restTemplate,
-                         @Value("${catalog.url}") String catalogUrl) {
+                         @Value("${catalog.url}") String catalogUrl,
+                         CatalogResponseCache responseCache,
+                         ObjectMapper objectMapper,
+                         MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter,
+                         HttpClientProperties httpClientProperties) {
         this.restTemplate = restTemplate;
         this.catalogUrl = catalogUrl;
+        this.responseCache = responseCache;
+        this.objectMapper = objectMapper;
+        this.smileMapper = smileHttpMessageConverter.getObjectMapper();
+        this.cachedMediaType = httpClientProperties.isSmile() ? SMILE : MediaType.APPLICATION_JSON;
     }
 
     public PageDto<CategoryDto> getCategories(String token, int page, int size, String name) {
+        return getCategories(token, page, size, name, true);
+    }
+
+    // withTotal=false — каталог отдаёт Slice без count(*)
+    public PageDto<CategoryDto> getCategories(String token, int page, int size, String name, boolean withTotal) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<?> entity = new HttpEntity<>(headers);
@@ -33,9 +61,10 @@ public class CatalogClient {
                 .queryParam("page", page)
                 .queryParam("size", size)
                 .queryParamIfPresent("name", Optional.ofNullable(name))
+                .queryParamIfPresent("withTotal", withTotal ? Optional.empty() : Optional.of(false))
                 .toUriString();
-        ResponseEntity<PageDto<CategoryDto>> response = restTemplate.exchange(
-                url, HttpMethod.GET, entity, new ParameterizedTypeReference<PageDto<CategoryDto>>() {});
+        ResponseEntity<PageDto<CategoryDto>> response = get(
+                url, entity, new ParameterizedTypeReference<PageDto<CategoryDto>>() {});
         return response.getBody();
     }
 
@@ -43,23 +72,26 @@ public class CatalogClient {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<CategoryDto> entity = new HttpEntity<>(dto, headers);
-        return restTemplate.postForObject(catalogUrl + "/categories", entity, CategoryDto.class);
+        CategoryDto created = restTemplate.postForObject(catalogUrl + "/categories", entity, CategoryDto.class);
+        responseCache.invalidate("/categories");
+        return created;
     }
 
     public ResponseEntity<CategoryDto> getCategory(String token, Long id) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<?> entity = new HttpEntity<>(headers);
-        return restTemplate.exchange(
-                catalogUrl + "/categories/" + id, HttpMethod.GET, entity, CategoryDto.class);
+        return get(catalogUrl + "/categories/" + id, entity, CategoryDto.class);
     }
 
     public CategoryDto updateCategory(String token, Long id, CategoryDto dto) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<CategoryDto> entity = new HttpEntity<>(dto, headers);
-        return restTemplate.exchange(
+        CategoryDto updated = restTemplate.exchange(
                 catalogUrl + "/categories/" + id, HttpMethod.PUT, entity, CategoryDto.class).getBody();
+        responseCache.invalidate("/categories");
+        return updated;
     }
 
     public void deleteCategory(String token, Long id) {
@@ -67,6 +99,7 @@ public class CatalogClient {
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<?> entity = new HttpEntity<>(headers);
         restTemplate.exchange(catalogUrl + "/categories/" + id, HttpMethod.DELETE, entity, Void.class);
+        responseCache.invalidate("/categories");
     }
 
     public PageDto<ProductDto> getProducts(String token,
@@ -77,6 +110,18 @@ public class CatalogClient {
                                         BigDecimal minPrice,
                                         BigDecimal maxPrice,
                                         Boolean onlyActive) {
+        return getProducts(token, page, size, categoryId, q, minPrice, maxPrice, onlyActive, true);
+    }
+
+    public PageDto<ProductDto> getProducts(String token,
+                                        int page,
+                                        int size,
+                                        Long categoryId,
+                                        String q,
+                                        BigDecimal minPrice,
+                                        BigDecimal maxPrice,
+                                        Boolean onlyActive,
+                                        boolean withTotal) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<?> entity = new HttpEntity<>(headers);
@@ -88,9 +133,35 @@ public class CatalogClient {
                 .queryParamIfPresent("minPrice", Optional.ofNullable(minPrice))
                 .queryParamIfPresent("maxPrice", Optional.ofNullable(maxPrice))
                 .queryParamIfPresent("onlyActive", Optional.ofNullable(onlyActive))
+                .queryParamIfPresent("withTotal", withTotal ? Optional.empty() : Optional.of(false))
+                .toUriString();
+        ResponseEntity<PageDto<ProductDto>> response = get(
+                url, entity, new ParameterizedTypeReference<PageDto<ProductDto>>() {});
+        return response.getBody();
+    }
+
+    public CursorPageDto<ProductDto> scrollProducts(String token,
+                                                    String after,
+                                                    int size,
+                                                    Long categoryId,
+                                                    String q,
+                                                    BigDecimal minPrice,
+                                                    BigDecimal maxPrice,
+                                                    Boolean onlyActive) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Bearer " + token);
+        HttpEntity<?> entity = new HttpEntity<>(headers);
+        String url = UriComponentsBuilder.fromHttpUrl(catalogUrl + "/products/scroll")
+                .queryParamIfPresent("after", Optional.ofNullable(after))
+                .queryParam("size", size)
+                .queryParamIfPresent("categoryId", Optional.ofNullable(categoryId))
+                .queryParamIfPresent("q", Optional.ofNullable(q))
+                .queryParamIfPresent("minPrice", Optional.ofNullable(minPrice))
+                .queryParamIfPresent("maxPrice", Optional.ofNullable(maxPrice))
+                .queryParamIfPresent("onlyActive", Optional.ofNullable(onlyActive))
                 .toUriString();
-        ResponseEntity<PageDto<ProductDto>> response = restTemplate.exchange(
-                url, HttpMethod.GET, entity, new ParameterizedTypeReference<PageDto<ProductDto>>() {});
+        ResponseEntity<CursorPageDto<ProductDto>> response = get(
+                url, entity, new ParameterizedTypeReference<CursorPageDto<ProductDto>>() {});
         return response.getBody();
     }
 
@@ -98,23 +169,26 @@ public class CatalogClient {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<ProductDto> entity = new HttpEntity<>(dto, headers);
-        return  restTemplate.postForObject(catalogUrl + "/products", entity, ProductDto.class);
+        ProductDto created = restTemplate.postForObject(catalogUrl + "/products", entity, ProductDto.class);
+        responseCache.invalidate("/products");
+        return created;
     }
 
     public ResponseEntity<ProductDto> getProduct(String token, Long id) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<?> entity = new HttpEntity<>(headers);
-        return restTemplate.exchange(
-                catalogUrl + "/products/" + id, HttpMethod.GET, entity, ProductDto.class);
+        return get(catalogUrl + "/products/" + id, entity, ProductDto.class);
     }
 
     public ProductDto updateProduct(String token, Long id, ProductDto dto) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<ProductDto> entity = new HttpEntity<>(dto, headers);
-        return restTemplate.exchange(
+        ProductDto updated = restTemplate.exchange(
                 catalogUrl + "/products/" + id, HttpMethod.PUT, entity, ProductDto.class).getBody();
+        responseCache.invalidate("/products");
+        return updated;
     }
 
     public void deleteProduct(String token, Long id) {
@@ -122,6 +196,7 @@ public class CatalogClient {
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<?> entity = new HttpEntity<>(headers);
         restTemplate.exchange(catalogUrl + "/products/" + id, HttpMethod.DELETE, entity, Void.class);
+        responseCache.invalidate("/products");
     }
 
     public ProductDto updateStock(String token, Long id, Integer delta) {
@@ -131,6 +206,75 @@ public class CatalogClient {
         String url = UriComponentsBuilder.fromHttpUrl(catalogUrl + "/products/" + id + "/stock")
                 .queryParam("delta", delta)
                 .toUriString();
-        return restTemplate.exchange(url, HttpMethod.PATCH, entity, ProductDto.class).getBody();
+        ProductDto updated = restTemplate.exchange(url, HttpMethod.PATCH, entity, ProductDto.class).getBody();
+        responseCache.invalidate("/products");
+        return updated;
+    }
+
+    private <T> ResponseEntity<T> get(String url, HttpEntity<?> entity, Class<T> type) {
+        if (!isCached(url)) {
+            return restTemplate.exchange(url, HttpMethod.GET, entity, type);
+        }
+        return getCached(url, entity, objectMapper.constructType(type));
+    }
+
+    private <T> ResponseEntity<T> get(String url, HttpEntity<?> entity, ParameterizedTypeReference<T> type) {
+        if (!isCached(url)) {
+            return restTemplate.exchange(url, HttpMethod.GET, entity, type);
+        }
+        return getCached(url, entity, objectMapper.constructType(type.getType()));
+    }
+
+    private boolean isCached(String url) {
+        return responseCache.isCacheable(HttpMethod.GET.name(), URI.create(url).getRawPath());
+    }
+
+    // GET через CatalogResponseCache, как в режиме streaming: тело хранится в формате обмена между сервисами
+    // (Smile, если http.client.smile) и разбирается в DTO при каждой выдаче
+    private <T> ResponseEntity<T> getCached(String url, HttpEntity<?> entity, JavaType type) {
+        URI uri = URI.create(url);
+        String pathAndQuery = url.substring(catalogUrl.length());
+        String accept = cachedMediaType.toString();
+        String key = responseCache.key(uri.getRawPath(), uri.getRawQuery(), accept);
+        String authorization = entity.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        CatalogResponseCache.CachedResponse cached = responseCache.get(key);
+        if (cached != null && responseCache.isFresh(cached)) {
+            return read(HttpStatus.OK, cached.headers(), cached.body(), type);
+        }
+        if (cached != null && responseCache.isServableStale(cached)) {
+            responseCache.revalidateAsync(key, pathAndQuery, authorization, accept);
+            return read(HttpStatus.OK, cached.headers(), cached.body(), type);
+        }
+
+        long generation = responseCache.generation();
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(entity.getHeaders());
+        headers.setAccept(List.of(cachedMediaType));
+        String etag = cached != null ? cached.headers().getETag() : null;
+        if (etag != null) {
+            headers.setIfNoneMatch(etag);
+        }
+        ResponseEntity<byte[]> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        if (etag != null && response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+            CatalogResponseCache.CachedResponse refreshed = responseCache.refresh(key, cached, generation);
+            return read(HttpStatus.OK, refreshed.headers(), refreshed.body(), type);
+        }
+        byte[] body = response.getBody() != null ? response.getBody() : new byte[0];
+        if (response.getStatusCode().value() == HttpStatus.OK.value() && body.length <= responseCache.getMaxEntryBytes()) {
+            responseCache.put(key, response.getHeaders(), body, generation);
+        }
+        return read(response.getStatusCode(), responseCache.storedHeaders(response.getHeaders()), body, type);
+    }
+
+    // Формат тела — по его Content-Type: каталог может ответить JSON и на запрос Smile (например, ошибкой)
+    private <T> ResponseEntity<T> read(HttpStatusCode status, HttpHeaders headers, byte[] body, JavaType type) {
+        MediaType contentType = headers.getContentType();
+        ObjectMapper mapper = contentType != null && SMILE.isCompatibleWith(contentType) ? smileMapper : objectMapper;
+        try {
+            T value = body.length > 0 ? mapper.readValue(body, type) : null;
+            return ResponseEntity.status(status).headers(headers).body(value);
+        } catch (IOException e) {
+            throw new RestClientException("Cannot read catalog response", e);
+        }
     }
 }
@@ -0,0 +1,247 @@
+package com.example.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш ответов каталога на GET /products и /categories в шлюзе. Свежая запись отдаётся без обращения к каталогу,
+ * устаревшая в пределах stale-while-revalidate — тоже, но с фоновой перепроверкой по If-None-Match.
+ * Память ограничена суммарным размером тел (gateway.cache.max-bytes).
+ * Общий для {@link CatalogClient} (режим mapped) и {@link StreamingProxy}.
+ */
+@Component
+public class CatalogResponseCache implements MeterBinder {
+    private static final Set<String> STORED_HEADERS = Set.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.CACHE_CONTROL);
+
+    private final ClientHttpRequestFactory requestFactory;
+    private final String catalogUrl;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long staleWhileRevalidateNanos;
+    private final int maxEntryBytes;
+    private final Cache<String, CachedResponse> entries;
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor revalidationExecutor;
+    // Растёт при каждой инвалидации: ответ, запрошенный до записи в каталог, уже не сохраняется
+    private final AtomicLong generation = new AtomicLong();
+
+    public CatalogResponseCache(RestTemplate restTemplate,
+                                @Value("${catalog.url}") String catalogUrl,
+                                @Value("${gateway.cache.enabled:true}") boolean enabled,
+                                @Value("${gateway.cache.max-bytes:67108864}") long maxBytes,
+                                @Value("${gateway.cache.max-entry-bytes:1048576}") int maxEntryBytes,
+                                @Value("${gateway.cache.ttl-ms:10000}") long ttlMs,
+                                @Value("${gateway.cache.stale-while-revalidate-ms:30000}") long staleWhileRevalidateMs,
+                                @Value("${gateway.cache.revalidation.threads:2}") int revalidationThreads,
+                                @Value("${gateway.cache.revalidation.queue-capacity:64}") int revalidationQueueCapacity) {
+        this.requestFactory = restTemplate.getRequestFactory();
+        this.catalogUrl = catalogUrl;
+        this.enabled = enabled;
+        this.ttlNanos = Duration.ofMillis(ttlMs).toNanos();
+        this.staleWhileRevalidateNanos = Duration.ofMillis(staleWhileRevalidateMs).toNanos();
+        this.maxEntryBytes = maxEntryBytes;
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedResponse response) -> response.body().length)
+                .expireAfterWrite(Duration.ofMillis(ttlMs + staleWhileRevalidateMs))
+                .recordStats()
+                .build();
+        // Перепроверки — блокирующий HTTP: свой небольшой пул вместо общего ForkJoinPool.
+        // При полной очереди перепроверка пропускается, запись отдаётся до конца окна stale-while-revalidate
+        this.revalidationExecutor = new ThreadPoolExecutor(
+                revalidationThreads, revalidationThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(revalidationQueueCapacity), revalidationThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.revalidationExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    // path — путь внутри каталога (/products, /categories/1)
+    public boolean isCacheable(String method, String path) {
+        return enabled && HttpMethod.GET.matches(method)
+                && (path.startsWith("/products") || path.startsWith("/categories"));
+    }
+
+    // Ключ: Accept + путь без завершающего / + параметры запроса в отсортированном порядке
+    public String key(String path, String query, String accept) {
+        String normalizedPath = path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        String normalizedQuery = query == null || query.isEmpty() ? "" : "?" + Arrays.stream(query.split("&"))
+                .filter(param -> !param.isEmpty())
+                .sorted()
+                .collect(Collectors.joining("&"));
+        return (accept != null ? accept : "*/*") + " " + normalizedPath + normalizedQuery;
+    }
+
+    public CachedResponse get(String key) {
+        return entries.getIfPresent(key);
+    }
+
+    public boolean isFresh(CachedResponse response) {
+        return System.nanoTime() - response.storedAt() < ttlNanos;
+    }
+
+    public boolean isServableStale(CachedResponse response) {
+        return System.nanoTime() - response.storedAt() < ttlNanos + staleWhileRevalidateNanos;
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    // Снимается перед запросом к каталогу и передаётся в put
+    public long generation() {
+        return generation.get();
+    }
+
+    // Сохраняет 200-ответ, если каталог не запретил кэширование и с момента запроса не было инвалидации
+    public void put(String key, HttpHeaders headers, byte[] body, long requestGeneration) {
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null && (cacheControl.contains("no-store") || cacheControl.contains("private"))) {
+            return;
+        }
+        if (requestGeneration != generation.get()) {
+            return;
+        }
+        entries.put(key, new CachedResponse(storedHeaders(headers), body, System.nanoTime()));
+    }
+
+    // Заголовки ответа каталога, которые хранятся вместе с телом
+    public HttpHeaders storedHeaders(HttpHeaders headers) {
+        HttpHeaders stored = new HttpHeaders();
+        STORED_HEADERS.forEach(name -> {
+            if (headers.containsKey(name)) {
+                stored.put(name, headers.get(name));
+            }
+        });
+        return stored;
+    }
+
+    // Ответ 304 на If-None-Match: тело прежнее, отсчёт свежести начинается заново
+    public CachedResponse refresh(String key, CachedResponse response, long requestGeneration) {
+        CachedResponse refreshed = new CachedResponse(response.headers(), response.body(), System.nanoTime());
+        if (requestGeneration == generation.get()) {
+            entries.put(key, refreshed);
+        }
+        return refreshed;
+    }
+
+    // Успешная запись в каталог (RFC 9111, 4.4): сбрасываются ответы по всей коллекции —
+    // самому ресурсу (/products/1), спискам и поиску (/products?..., /products/scroll)
+    public void invalidate(String path) {
+        int end = path.indexOf('/', 1);
+        String collection = end > 0 ? path.substring(0, end) : path;
+        generation.incrementAndGet();
+        entries.asMap().keySet().removeIf(key -> {
+            String target = key.substring(key.lastIndexOf(' ') + 1);
+            int query = target.indexOf('?');
+            String targetPath = query >= 0 ? target.substring(0, query) : target;
+            return targetPath.equals(collection) || targetPath.startsWith(collection + "/");
+        });
+    }
+
+    // Одна фоновая перепроверка на ключ; токен — из запроса, который застал устаревшую запись
+    public void revalidateAsync(String key, String pathAndQuery, String authorization, String accept) {
+        CachedResponse current = entries.getIfPresent(key);
+        if (current == null || !revalidating.add(key)) {
+            return;
+        }
+        try {
+            revalidationExecutor.execute(() -> {
+                try {
+                    revalidate(key, current, pathAndQuery, authorization, accept);
+                } catch (IOException | RuntimeException e) {
+                    // Запись доживёт до конца окна stale-while-revalidate; следующий промах сходит в каталог сам
+                } finally {
+                    revalidating.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            revalidating.remove(key);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        revalidationExecutor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, entries, "gateway.catalog-responses");
+    }
+
+    private void revalidate(String key, CachedResponse current, String pathAndQuery, String authorization,
+                            String accept) throws IOException {
+        long requestGeneration = generation.get();
+        ClientHttpRequest request = requestFactory.createRequest(URI.create(catalogUrl + pathAndQuery), HttpMethod.GET);
+        if (authorization != null) {
+            request.getHeaders().set(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        if (accept != null) {
+            request.getHeaders().set(HttpHeaders.ACCEPT, accept);
+        }
+        String etag = current.headers().getETag();
+        if (etag != null) {
+            request.getHeaders().setIfNoneMatch(etag);
+        }
+        try (ClientHttpResponse response = request.execute()) {
+            if (response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                refresh(key, current, requestGeneration);
+            } else if (response.getStatusCode().value() == HttpStatus.OK.value()
+                    && response.getHeaders().getContentLength() <= maxEntryBytes) {
+                try (InputStream body = response.getBody()) {
+                    byte[] bytes = StreamUtils.copyToByteArray(body);
+                    if (bytes.length <= maxEntryBytes) {
+                        put(key, response.getHeaders(), bytes, requestGeneration);
+                        return;
+                    }
+                }
+                entries.invalidate(key);
+            } else {
+                entries.invalidate(key);
+            }
+        }
+    }
+
+    private static ThreadFactory revalidationThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "catalog-cache-revalidate-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public record CachedResponse(HttpHeaders headers, byte[] body, long storedAt) {
+    }
+}
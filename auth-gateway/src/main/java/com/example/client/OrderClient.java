@@ -1,5 +1,6 @@
 package com.example.client;
 
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.order.*;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,6 +28,17 @@ public class OrderClient {
     }
 
     public PageDto<OrderSummaryDto> getOrders(String token, int page, int size, String status, Long userId) {
+        return getOrders(token, page, size, status, userId, true);
+    }
+
+    public PageDto<OrderSummaryDto> getOrders(String token, int page, int size, String status, Long userId,
+                                              boolean withTotal) {
+        return getOrders(token, page, size, status, userId, withTotal, null);
+    }
+
+    // withTotal=false — сервис заказов отдаёт Slice без count(*); include=items — заказы вместе с позициями
+    public PageDto<OrderSummaryDto> getOrders(String token, int page, int size, String status, Long userId,
+                                              boolean withTotal, String include) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<?> entity = new HttpEntity<>(headers);
@@ -35,12 +47,39 @@ public class OrderClient {
                 .queryParam("size", size)
                 .queryParamIfPresent("status", Optional.ofNullable(status))
                 .queryParamIfPresent("userId", Optional.ofNullable(userId))
+                .queryParamIfPresent("withTotal", withTotal ? Optional.empty() : Optional.of(false))
+                .queryParamIfPresent("include", Optional.ofNullable(include))
                 .toUriString();
         ResponseEntity<PageDto<OrderSummaryDto>> response = restTemplate.exchange(
                 url, HttpMethod.GET, entity, new ParameterizedTypeReference<PageDto<OrderSummaryDto>>() {});
         return response.getBody();
     }
 
+    public CursorPageDto<OrderSummaryDto> scrollOrders(String token, String after, int size, String status, Long userId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Bearer " + token);
+        HttpEntity<?> entity = new HttpEntity<>(headers);
+        String url = UriComponentsBuilder.fromHttpUrl(orderUrl + "/orders/scroll")
+                .queryParamIfPresent("after", Optional.ofNullable(after))
+                .queryParam("size", size)
+                .queryParamIfPresent("status", Optional.ofNullable(status))
+                .queryParamIfPresent("userId", Optional.ofNullable(userId))
+                .toUriString();
+        ResponseEntity<CursorPageDto<OrderSummaryDto>> response = restTemplate.exchange(
+                url, HttpMethod.GET, entity, new ParameterizedTypeReference<CursorPageDto<OrderSummaryDto>>() {});
+        return response.getBody();
+    }
+
+    public OrderStatsDto getOrderStats(String token, Long userId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Bearer " + token);
+        HttpEntity<?> entity = new HttpEntity<>(headers);
+        String url = UriComponentsBuilder.fromHttpUrl(orderUrl + "/orders/stats")
+                .queryParamIfPresent("userId", Optional.ofNullable(userId))
+                .toUriString();
+        return restTemplate.exchange(url, HttpMethod.GET, entity, OrderStatsDto.class).getBody();
+    }
+
     public OrderDto createOrder(String token, OrderRequestDto dto) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
@@ -0,0 +1,26 @@
+package com.example.client;
+
+import java.util.Set;
+
+// Что прозрачные прокси (streaming, reactive) пропускают к сервисам: только публичные пути и известные заголовки
+final class ProxyRules {
+    // Заголовки запроса клиента, которые уходят сервису; остальные (Cookie, X-Forwarded-*, служебные) отбрасываются
+    private static final Set<String> FORWARDED_REQUEST_HEADERS = Set.of(
+            "accept", "accept-language", "authorization", "content-type",
+            "if-match", "if-none-match", "if-modified-since", "if-unmodified-since", "x-request-id");
+    // Внутренние эндпоинты сервисов, снаружи недоступные
+    private static final Set<String> BLOCKED_PATH_PREFIXES = Set.of("/actuator");
+
+    private ProxyRules() {
+    }
+
+    static boolean isForwardedRequestHeader(String name) {
+        return FORWARDED_REQUEST_HEADERS.contains(name.toLowerCase());
+    }
+
+    // downstreamPath — путь в сервисе, без префикса /catalog или /order
+    static boolean isBlockedPath(String downstreamPath) {
+        return BLOCKED_PATH_PREFIXES.stream()
+                .anyMatch(prefix -> downstreamPath.equals(prefix) || downstreamPath.startsWith(prefix + "/"));
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.client;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Неблокирующий прокси на WebClient: поток Tomcat освобождается сразу после разбора запроса,
+ * а ответ сервиса дописывается асинхронно (async servlet), когда он придёт по соединению из пула Reactor Netty.
+ * Тела запроса и ответа идут потоком DataBuffer размером gateway.proxy.buffer-size и целиком в памяти не собираются.
+ */
+@Component
+@ConditionalOnProperty(name = "gateway.proxy.mode", havingValue = "reactive")
+public class ReactiveProxy {
+    // Заголовки ответа сервиса, которые не копируются: hop-by-hop (RFC 9110, 7.6.1) и выставляемые контейнером
+    private static final Set<String> SKIPPED_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te", "trailer",
+            "transfer-encoding", "upgrade", "host", "content-length");
+
+    private final WebClient webClient;
+    private final Map<String, String> routes;
+    private final int bufferSize;
+    private final long maxRequestBytes;
+
+    public ReactiveProxy(WebClient proxyWebClient,
+                         @Value("${catalog.url}") String catalogUrl,
+                         @Value("${order.url}") String orderUrl,
+                         @Value("${gateway.proxy.buffer-size:8192}") int bufferSize,
+                         @Value("${gateway.proxy.reactive.max-request-bytes:10485760}") long maxRequestBytes) {
+        this.webClient = proxyWebClient;
+        this.routes = Map.of("/catalog", catalogUrl, "/order", orderUrl);
+        this.bufferSize = bufferSize;
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    // Завершается, когда ответ записан в response; ошибки сервиса и соединения превращаются в статус, а не в исключение
+    public Mono<Void> proxy(HttpServletRequest request, HttpServletResponse response) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String prefix = path.startsWith("/catalog/") ? "/catalog" : path.startsWith("/order/") ? "/order" : null;
+        if (prefix == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return Mono.empty();
+        }
+        String downstreamPath = path.substring(prefix.length());
+        if (ProxyRules.isBlockedPath(downstreamPath)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return Mono.empty();
+        }
+        // Объявленный размер проверяется до чтения тела; chunked-тело считается по ходу (requestBody)
+        if (request.getContentLengthLong() > maxRequestBytes) {
+            response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            return Mono.empty();
+        }
+        String query = request.getQueryString();
+        URI uri = URI.create(routes.get(prefix) + downstreamPath + (query != null ? "?" + query : ""));
+
+        WebClient.RequestBodySpec downstream = webClient.method(HttpMethod.valueOf(request.getMethod()))
+                .uri(uri)
+                .headers(headers -> {
+                    for (String name : Collections.list(request.getHeaderNames())) {
+                        if (ProxyRules.isForwardedRequestHeader(name)) {
+                            headers.addAll(name, Collections.list(request.getHeaders(name)));
+                        }
+                    }
+                });
+        WebClient.RequestHeadersSpec<?> exchange = downstream;
+        if (hasBody(request)) {
+            if (request.getContentLengthLong() > 0) {
+                downstream.contentLength(request.getContentLengthLong());
+            }
+            exchange = downstream.body(BodyInserters.fromDataBuffers(requestBody(request)));
+        }
+        // exchangeToMono не превращает 4xx/5xx в исключения: статус и тело сервиса уходят клиенту как есть
+        return exchange.exchangeToMono(upstream -> writeUpstream(upstream, response))
+                .onErrorResume(e -> {
+                    if (!response.isCommitted()) {
+                        response.resetBuffer();
+                        response.setStatus(NestedExceptionUtils.getMostSpecificCause(e) instanceof DataBufferLimitException
+                                ? HttpStatus.PAYLOAD_TOO_LARGE.value() : HttpStatus.BAD_GATEWAY.value());
+                    }
+                    return Mono.empty();
+                });
+    }
+
+    // Сервлетный InputStream блокирующий: чтение порциями уходит на boundedElastic, а не на event loop Netty
+    private Flux<DataBuffer> requestBody(HttpServletRequest request) {
+        AtomicLong total = new AtomicLong();
+        return DataBufferUtils.readInputStream(request::getInputStream, DefaultDataBufferFactory.sharedInstance,
+                        bufferSize)
+                .subscribeOn(Schedulers.boundedElastic())
+                .handle((buffer, sink) -> {
+                    if (total.addAndGet(buffer.readableByteCount()) > maxRequestBytes) {
+                        DataBufferUtils.release(buffer);
+                        sink.error(new DataBufferLimitException("Request body exceeds " + maxRequestBytes + " bytes"));
+                    } else {
+                        sink.next(buffer);
+                    }
+                });
+    }
+
+    // Запись в сервлетный поток тоже блокирующая, поэтому порции ответа публикуются на boundedElastic
+    private Mono<Void> writeUpstream(ClientResponse upstream, HttpServletResponse response) {
+        response.setStatus(upstream.statusCode().value());
+        HttpHeaders headers = upstream.headers().asHttpHeaders();
+        headers.forEach((name, values) -> {
+            if (!SKIPPED_HEADERS.contains(name.toLowerCase())) {
+                setHeader(response, name, values);
+            }
+        });
+        if (headers.getContentLength() >= 0) {
+            response.setContentLengthLong(headers.getContentLength());
+        }
+        OutputStream out;
+        try {
+            out = response.getOutputStream();
+        } catch (IOException e) {
+            return Mono.error(e);
+        }
+        return DataBufferUtils.write(upstream.bodyToFlux(DataBuffer.class).publishOn(Schedulers.boundedElastic()), out)
+                .doOnNext(DataBufferUtils::release)
+                .then();
+    }
+
+    private boolean hasBody(HttpServletRequest request) {
+        return request.getContentLengthLong() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null;
+    }
+
+    // Заголовки, уже выставленные фильтрами шлюза (например, Spring Security), заменяются ответом сервиса
+    private void setHeader(HttpServletResponse response, String name, List<String> values) {
+        response.setHeader(name, values.get(0));
+        for (int i = 1; i < values.size(); i++) {
+            response.addHeader(name, values.get(i));
+        }
+    }
+}
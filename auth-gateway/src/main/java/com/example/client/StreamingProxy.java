@@ -0,0 +1,233 @@
+package com.example.client;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Прозрачный прокси без маппинга в DTO: статус, заголовки и тело копируются между соединением
+ * с сервисом и сервлетным потоком буфером фиксированного размера, поэтому память не зависит от размера ответа.
+ * GET-чтения каталога проходят через {@link CatalogResponseCache}.
+ */
+@Component
+public class StreamingProxy {
+    // Заголовки ответа сервиса, которые не копируются: hop-by-hop (RFC 9110, 7.6.1) и выставляемые контейнером
+    private static final Set<String> SKIPPED_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te", "trailer",
+            "transfer-encoding", "upgrade", "host", "content-length");
+    private static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    private final ClientHttpRequestFactory requestFactory;
+    private final Map<String, String> routes;
+    private final int bufferSize;
+    private final CatalogResponseCache responseCache;
+
+    public StreamingProxy(RestTemplate restTemplate,
+                          @Value("${catalog.url}") String catalogUrl,
+                          @Value("${order.url}") String orderUrl,
+                          @Value("${gateway.proxy.buffer-size:8192}") int bufferSize,
+                          CatalogResponseCache responseCache) {
+        // Та же фабрика, что у RestTemplate: общий пул соединений и таймауты из http.client
+        this.requestFactory = restTemplate.getRequestFactory();
+        this.routes = Map.of("/catalog", catalogUrl, "/order", orderUrl);
+        this.bufferSize = bufferSize;
+        this.responseCache = responseCache;
+    }
+
+    public void proxy(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String prefix = path.startsWith("/catalog/") ? "/catalog" : path.startsWith("/order/") ? "/order" : null;
+        if (prefix == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String downstreamPath = path.substring(prefix.length());
+        if (ProxyRules.isBlockedPath(downstreamPath)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String query = request.getQueryString();
+        String pathAndQuery = downstreamPath + (query != null ? "?" + query : "");
+        URI uri = URI.create(routes.get(prefix) + pathAndQuery);
+
+        if ("/catalog".equals(prefix) && responseCache.isCacheable(request.getMethod(), downstreamPath)) {
+            proxyCached(request, response, uri, downstreamPath, query, pathAndQuery);
+            return;
+        }
+        try (ClientHttpResponse upstream = createDownstream(request, uri).execute()) {
+            if ("/catalog".equals(prefix) && !isSafe(request.getMethod()) && !upstream.getStatusCode().isError()) {
+                responseCache.invalidate(downstreamPath);
+            }
+            writeUpstream(upstream, response, null);
+        }
+    }
+
+    private void proxyCached(HttpServletRequest request, HttpServletResponse response, URI uri,
+                             String path, String query, String pathAndQuery) throws IOException {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        String key = responseCache.key(path, query, accept);
+        CatalogResponseCache.CachedResponse cached = responseCache.get(key);
+        if (cached != null && responseCache.isFresh(cached)) {
+            writeCached(request, response, cached, "HIT");
+            return;
+        }
+        if (cached != null && responseCache.isServableStale(cached)) {
+            responseCache.revalidateAsync(key, pathAndQuery, request.getHeader(HttpHeaders.AUTHORIZATION), accept);
+            writeCached(request, response, cached, "STALE");
+            return;
+        }
+
+        long generation = responseCache.generation();
+        ClientHttpRequest downstream = createDownstream(request, uri);
+        String etag = cached != null ? cached.headers().getETag() : null;
+        boolean conditional = etag != null && request.getHeader(HttpHeaders.IF_NONE_MATCH) == null;
+        if (conditional) {
+            downstream.getHeaders().setIfNoneMatch(etag);
+        }
+        try (ClientHttpResponse upstream = downstream.execute()) {
+            if (conditional && upstream.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                writeCached(request, response, responseCache.refresh(key, cached, generation), "REVALIDATED");
+                return;
+            }
+            response.setHeader(CACHE_STATUS_HEADER, "MISS");
+            boolean storable = upstream.getStatusCode().value() == HttpStatus.OK.value()
+                    && upstream.getHeaders().getContentLength() <= responseCache.getMaxEntryBytes();
+            BoundedBuffer tee = storable ? new BoundedBuffer(responseCache.getMaxEntryBytes()) : null;
+            writeUpstream(upstream, response, tee);
+            if (tee != null && !tee.isOverflowed()) {
+                responseCache.put(key, upstream.getHeaders(), tee.toByteArray(), generation);
+            }
+        }
+    }
+
+    private ClientHttpRequest createDownstream(HttpServletRequest request, URI uri) throws IOException {
+        ClientHttpRequest downstream = requestFactory.createRequest(uri, HttpMethod.valueOf(request.getMethod()));
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (ProxyRules.isForwardedRequestHeader(name)) {
+                downstream.getHeaders().addAll(name, Collections.list(request.getHeaders(name)));
+            }
+        }
+        if (hasBody(request)) {
+            if (request.getContentLengthLong() > 0) {
+                downstream.getHeaders().setContentLength(request.getContentLengthLong());
+            }
+            if (downstream instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(out -> copy(request.getInputStream(), out, null));
+            } else {
+                copy(request.getInputStream(), downstream.getBody(), null);
+            }
+        }
+        return downstream;
+    }
+
+    private void writeUpstream(ClientHttpResponse upstream, HttpServletResponse response, BoundedBuffer tee)
+            throws IOException {
+        response.setStatus(upstream.getStatusCode().value());
+        HttpHeaders headers = upstream.getHeaders();
+        headers.forEach((name, values) -> {
+            if (!SKIPPED_HEADERS.contains(name.toLowerCase())) {
+                setHeader(response, name, values);
+            }
+        });
+        if (headers.getContentLength() >= 0) {
+            response.setContentLengthLong(headers.getContentLength());
+        }
+        try (InputStream body = upstream.getBody()) {
+            copy(body, response.getOutputStream(), tee);
+        }
+        response.flushBuffer();
+    }
+
+    // Клиент с тем же ETag получает 304 без тела
+    private void writeCached(HttpServletRequest request, HttpServletResponse response,
+                             CatalogResponseCache.CachedResponse cached, String cacheStatus) throws IOException {
+        cached.headers().forEach((name, values) -> setHeader(response, name, values));
+        response.setHeader(CACHE_STATUS_HEADER, cacheStatus);
+        String etag = cached.headers().getETag();
+        if (etag != null && etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentLength(cached.body().length);
+        response.getOutputStream().write(cached.body());
+        response.flushBuffer();
+    }
+
+    private boolean isSafe(String method) {
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)
+                || HttpMethod.OPTIONS.matches(method) || HttpMethod.TRACE.matches(method);
+    }
+
+    private boolean hasBody(HttpServletRequest request) {
+        return request.getContentLengthLong() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null;
+    }
+
+    // Заголовки, уже выставленные фильтрами шлюза (например, Spring Security), заменяются ответом сервиса
+    private void setHeader(HttpServletResponse response, String name, List<String> values) {
+        response.setHeader(name, values.get(0));
+        for (int i = 1; i < values.size(); i++) {
+            response.addHeader(name, values.get(i));
+        }
+    }
+
+    private void copy(InputStream in, OutputStream out, BoundedBuffer tee) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            if (tee != null) {
+                tee.write(buffer, read);
+            }
+        }
+        out.flush();
+    }
+
+    // Копия тела для кэша: после limit байт копирование прекращается, а ответ не кэшируется
+    private static final class BoundedBuffer {
+        private final int limit;
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private BoundedBuffer(int limit) {
+            this.limit = limit;
+        }
+
+        private void write(byte[] buffer, int length) {
+            if (bytes == null) {
+                return;
+            }
+            if (bytes.size() + length > limit) {
+                bytes = null;
+                return;
+            }
+            bytes.write(buffer, 0, length);
+        }
+
+        private boolean isOverflowed() {
+            return bytes == null;
+        }
+
+        private byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
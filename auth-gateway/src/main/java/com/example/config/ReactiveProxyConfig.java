@@ -0,0 +1,50 @@
+package com.example.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+// gateway.proxy.mode=reactive: пул Reactor Netty, общий для маршрутов /catalog и /order
+@Configuration
+@ConditionalOnProperty(name = "gateway.proxy.mode", havingValue = "reactive")
+public class ReactiveProxyConfig {
+
+    // Соединения ограничены сокетами, а не потоками: ожидающие ответа запросы не занимают поток Tomcat
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider proxyConnectionProvider(
+            @Value("${gateway.proxy.reactive.max-connections:500}") int maxConnections,
+            @Value("${gateway.proxy.reactive.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+            @Value("${gateway.proxy.reactive.pending-acquire-timeout-ms:2000}") long pendingAcquireTimeoutMs,
+            @Value("${gateway.proxy.reactive.max-idle-time-ms:30000}") long maxIdleTimeMs) {
+        return ConnectionProvider.builder("gateway-proxy")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .evictInBackground(Duration.ofMillis(maxIdleTimeMs))
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient proxyWebClient(WebClient.Builder builder,
+                                    ConnectionProvider proxyConnectionProvider,
+                                    @Value("${gateway.proxy.reactive.connect-timeout-ms:2000}") int connectTimeoutMs,
+                                    @Value("${gateway.proxy.reactive.response-timeout-ms:10000}") long responseTimeoutMs) {
+        HttpClient httpClient = HttpClient.create(proxyConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs));
+        // Тела проксируются потоком DataBuffer (ReactiveProxy), поэтому лимит буфера кодеков здесь не нужен
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -1,23 +1,31 @@
 package com.example.controller;
 
 import com.example.client.CatalogClient;
+import com.example.client.StreamingProxy;
 import com.example.dto.catalog.CategoryDto;
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.catalog.ProductDto;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 
 @RestController
+@ConditionalOnProperty(name = "gateway.proxy.mode", havingValue = "mapped", matchIfMissing = true)
 @RequestMapping("/catalog")
 public class CatalogProxyController {
 
     private final CatalogClient catalogClient;
+    private final StreamingProxy streamingProxy;
 
-    public CatalogProxyController(CatalogClient client) {
+    public CatalogProxyController(CatalogClient client, StreamingProxy streamingProxy) {
         this.catalogClient = client;
+        this.streamingProxy = streamingProxy;
     }
 
     private String getToken(HttpServletRequest request) {
@@ -29,8 +37,9 @@ public class CatalogProxyController {
     public PageDto<CategoryDto> getCategories(HttpServletRequest request,
                                               @RequestParam(defaultValue = "0") int page,
                                               @RequestParam(defaultValue = "10") int size,
-                                              @RequestParam(required = false) String name) {
-        return catalogClient.getCategories(getToken(request), page, size, name);
+                                              @RequestParam(required = false) String name,
+                                              @RequestParam(defaultValue = "true") boolean withTotal) {
+        return catalogClient.getCategories(getToken(request), page, size, name, withTotal);
     }
 
     @PostMapping("/categories")
@@ -67,9 +76,23 @@ public class CatalogProxyController {
                                         @RequestParam(required = false) String q,
                                         @RequestParam(required = false) BigDecimal minPrice,
                                         @RequestParam(required = false) BigDecimal maxPrice,
-                                        @RequestParam(required = false) Boolean onlyActive) {
+                                        @RequestParam(required = false) Boolean onlyActive,
+                                        @RequestParam(defaultValue = "true") boolean withTotal) {
         return catalogClient.getProducts(
-                getToken(request), page, size, categoryId, q, minPrice, maxPrice, onlyActive);
+                getToken(request), page, size, categoryId, q, minPrice, maxPrice, onlyActive, withTotal);
+    }
+
+    @GetMapping("/products/scroll")
+    public CursorPageDto<ProductDto> scrollProducts(HttpServletRequest request,
+                                                    @RequestParam(required = false) String after,
+                                                    @RequestParam(defaultValue = "20") int size,
+                                                    @RequestParam(required = false) Long categoryId,
+                                                    @RequestParam(required = false) String q,
+                                                    @RequestParam(required = false) BigDecimal minPrice,
+                                                    @RequestParam(required = false) BigDecimal maxPrice,
+                                                    @RequestParam(required = false) Boolean onlyActive) {
+        return catalogClient.scrollProducts(
+                getToken(request), after, size, categoryId, q, minPrice, maxPrice, onlyActive);
     }
 
     @PostMapping("/products")
@@ -78,6 +101,12 @@ public class CatalogProxyController {
         return catalogClient.createProduct(getToken(request), dto);
     }
 
+    // CSV/NDJSON импорта идёт в каталог потоком, без буферизации тела в шлюзе
+    @PostMapping("/products/import")
+    public void importProducts(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        streamingProxy.proxy(request, response);
+    }
+
     @GetMapping("/products/{id}")
     public ResponseEntity<ProductDto> getProduct(HttpServletRequest request,
                                                  @PathVariable Long id) {
@@ -1,19 +1,28 @@
 package com.example.controller;
 
 import com.example.client.OrderClient;
+import com.example.client.StreamingProxy;
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.order.*;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+
 @RestController
+@ConditionalOnProperty(name = "gateway.proxy.mode", havingValue = "mapped", matchIfMissing = true)
 @RequestMapping("/order")
 public class OrderProxyController {
     private final OrderClient orderClient;
+    private final StreamingProxy streamingProxy;
 
-    public OrderProxyController(OrderClient orderClient) {
+    public OrderProxyController(OrderClient orderClient, StreamingProxy streamingProxy) {
         this.orderClient = orderClient;
+        this.streamingProxy = streamingProxy;
     }
 
     private String getToken(HttpServletRequest request) {
@@ -26,8 +35,37 @@ public class OrderProxyController {
                                               @RequestParam(defaultValue = "0") int page,
                                               @RequestParam(defaultValue = "10") int size,
                                               @RequestParam(required = false) String status,
-                                              @RequestParam(required = false) Long userId) {
-        return orderClient.getOrders(getToken(request), page, size, status, userId);
+                                              @RequestParam(required = false) Long userId,
+                                              @RequestParam(defaultValue = "true") boolean withTotal,
+                                              @RequestParam(required = false) String include) {
+        return orderClient.getOrders(getToken(request), page, size, status, userId, withTotal, include);
+    }
+
+    @GetMapping("/orders/scroll")
+    public CursorPageDto<OrderSummaryDto> scrollOrders(HttpServletRequest request,
+                                                       @RequestParam(required = false) String after,
+                                                       @RequestParam(defaultValue = "20") int size,
+                                                       @RequestParam(required = false) String status,
+                                                       @RequestParam(required = false) Long userId) {
+        return orderClient.scrollOrders(getToken(request), after, size, status, userId);
+    }
+
+    @GetMapping("/orders/stats")
+    public OrderStatsDto getOrderStats(HttpServletRequest request,
+                                       @RequestParam(required = false) Long userId) {
+        return orderClient.getOrderStats(getToken(request), userId);
+    }
+
+    // Выгрузка не собирается в памяти шлюза: NDJSON/CSV идёт потоком, как в режиме streaming
+    @GetMapping("/orders/export")
+    public void exportOrders(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        streamingProxy.proxy(request, response);
+    }
+
+    // Отчёты по продажам отдаются как есть, без DTO в шлюзе
+    @GetMapping("/orders/reports/**")
+    public void getSalesReport(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        streamingProxy.proxy(request, response);
     }
 
     @PostMapping("/orders")
@@ -0,0 +1,40 @@
+package com.example.controller;
+
+import com.example.client.ReactiveProxy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// gateway.proxy.mode=reactive: запрос переводится в async-режим, поток Tomcat не ждёт сервис
+@RestController
+@ConditionalOnProperty(name = "gateway.proxy.mode", havingValue = "reactive")
+public class ReactiveProxyController {
+
+    private final ReactiveProxy reactiveProxy;
+
+    public ReactiveProxyController(ReactiveProxy reactiveProxy) {
+        this.reactiveProxy = reactiveProxy;
+    }
+
+    @RequestMapping({"/catalog/**", "/order/**"})
+    public void proxy(HttpServletRequest request, HttpServletResponse response) {
+        AsyncContext async = request.startAsync();
+        // Ожидание сервиса ограничено response-timeout-ms WebClient; таймаут контейнера оборвал бы длинную выгрузку
+        async.setTimeout(0);
+        reactiveProxy.proxy(request, response)
+                .doFinally(signal -> complete(async))
+                .subscribe();
+    }
+
+    // Контейнер мог уже завершить запрос сам, например после обрыва соединения клиентом
+    private void complete(AsyncContext async) {
+        try {
+            async.complete();
+        } catch (IllegalStateException e) {
+            // Запрос уже завершён
+        }
+    }
+}
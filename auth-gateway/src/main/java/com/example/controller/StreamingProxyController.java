@@ -0,0 +1,27 @@
+package com.example.controller;
+
+import com.example.client.StreamingProxy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+// gateway.proxy.mode=streaming: /catalog/** и /order/** идут потоком вместо Catalog/OrderProxyController
+@RestController
+@ConditionalOnProperty(name = "gateway.proxy.mode", havingValue = "streaming")
+public class StreamingProxyController {
+
+    private final StreamingProxy streamingProxy;
+
+    public StreamingProxyController(StreamingProxy streamingProxy) {
+        this.streamingProxy = streamingProxy;
+    }
+
+    @RequestMapping({"/catalog/**", "/order/**"})
+    public void proxy(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        streamingProxy.proxy(request, response);
+    }
+}
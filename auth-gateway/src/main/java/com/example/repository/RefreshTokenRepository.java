@@ -2,6 +2,10 @@ package com.example.repository;
 
 import com.example.entity.RefreshToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 
@@ -9,7 +13,17 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
 
     RefreshToken findByToken(String token);
 
-    void deleteByExpiresAtBefore(LocalDateTime expiresAt);
+    // Удаление порциями одним DELETE без загрузки сущностей; каждая порция — своя короткая транзакция.
+    // Подзапрос идёт по idx_refresh_tokens_expires_at / idx_refresh_tokens_revoked
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM refresh_tokens WHERE id IN " +
+            "(SELECT id FROM refresh_tokens WHERE expires_at < :before LIMIT :limit)", nativeQuery = true)
+    int deleteExpiredChunk(@Param("before") LocalDateTime before, @Param("limit") int limit);
 
-    void deleteByRevokedTrue();
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM refresh_tokens WHERE id IN " +
+            "(SELECT id FROM refresh_tokens WHERE revoked = TRUE LIMIT :limit)", nativeQuery = true)
+    int deleteRevokedChunk(@Param("limit") int limit);
 }
@@ -1,37 +1,34 @@
 package com.example.service;
 
 import com.example.dto.TokenResponse;
-import com.example.entity.RefreshToken;
 import com.example.entity.Role;
 import com.example.entity.User;
+import com.example.exception.ServiceUnavailableException;
 import com.example.exception.ValidationException;
-import com.example.repository.RefreshTokenRepository;
 import com.example.repository.UserRepository;
 import com.example.util.JwtUtil;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 @Service
 @Transactional
 public class AuthService {
 
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder encoder;
+    private final PasswordHasher encoder;
     private final JwtUtil jwtUtil;
-    private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenStore refreshTokenStore;
 
     public AuthService(UserRepository userRepository,
-                       BCryptPasswordEncoder encoder,
+                       PasswordHasher encoder,
                        JwtUtil jwtUtil,
-                       RefreshTokenRepository refreshTokenRepository) {
+                       RefreshTokenStore refreshTokenStore) {
         this.userRepository = userRepository;
         this.encoder = encoder;
         this.jwtUtil = jwtUtil;
-        this.refreshTokenRepository = refreshTokenRepository;
+        this.refreshTokenStore = refreshTokenStore;
     }
 
     public User register(User user) {
@@ -54,57 +51,55 @@ public class AuthService {
         if (!user.isActive()) {
             throw new RuntimeException("User not active");
         }
+        rehashIfNeeded(user, password);
         String accessToken = jwtUtil.generateAccessToken(
                 username,
                 user.getId(),
                 user.getLastName() + " " + user.getFirstName() + " " + user.getMiddleName(),
                 user.getRole().name());
 
-        String refreshToken = generateRefreshToken(user); // Метод ниже
+        String refreshToken = refreshTokenStore.issue(user.getId());
 
         return new TokenResponse(accessToken, refreshToken, "Bearer", jwtUtil.getExpiration());
     }
 
-    private String generateRefreshToken(User user) {
-        String token = UUID.randomUUID().toString(); // Или JWT
-        RefreshToken rt = new RefreshToken();
-        rt.setUser(user);
-        rt.setToken(token);
-        rt.setExpiresAt(LocalDateTime.now().plusDays(7)); // 7 дней
-        rt.setRevoked(false);
-        rt.setCreatedAt(LocalDateTime.now());
-        refreshTokenRepository.save(rt);
-        return token;
+    // Смена auth.bcrypt.strength применяется к пользователю при первом успешном входе
+    private void rehashIfNeeded(User user, String password) {
+        if (!encoder.needsRehash(user.getPasswordHash())) {
+            return;
+        }
+        try {
+            user.setPasswordHash(encoder.encode(password));
+            user.setUpdatedAt(LocalDateTime.now());
+            userRepository.save(user);
+        } catch (ServiceUnavailableException e) {
+            // Пул хеширования занят: вход не срываем, перехешируем в следующий раз
+        }
     }
 
     public TokenResponse refresh(String refreshToken) {
-        // Шаг 1: Проверяем refresh-токен
-        RefreshToken rt = refreshTokenRepository.findByToken(refreshToken);
-        if (rt == null || rt.isRevoked() || rt.getExpiresAt().isBefore(LocalDateTime.now())) {
-            throw new ValidationException("Invalid refresh token");
-        }
+        // Шаг 1: Отзываем refresh-токен; пусто — его нет, он отозван или истёк
+        Long userId = refreshTokenStore.revoke(refreshToken)
+                .orElseThrow(() -> new ValidationException("Invalid refresh token"));
         // Шаг 2: Находим пользователя
-        User user = rt.getUser();
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ValidationException("Invalid refresh token"));
         // Шаг 3: Генерируем новый access-токен
         String newAccessToken = jwtUtil.generateAccessToken(
                 user.getUsername(),
                 user.getId(),
                 user.getFirstName() + " " + user.getLastName(),
                 user.getRole().name());
-        // Шаг 4: Отзываем старый refresh-токен и создаём новый
-        rt.setRevoked(true);
-        refreshTokenRepository.save(rt);
-        String newRefreshToken = generateRefreshToken(user);  // новый refresh
+        // Шаг 4: Выпускаем новый refresh-токен взамен отозванного
+        String newRefreshToken = refreshTokenStore.issue(user.getId());
         // Шаг 5: Возвращаем новый access и refresh
         return new TokenResponse(newAccessToken, newRefreshToken, "Bearer", jwtUtil.getExpiration());
     }
 
+    // Идемпотентен: повторный logout и logout истёкшим токеном успешны, ошибка — только для неизвестного токена
     public void logout(String refreshToken) {
-        RefreshToken rt = refreshTokenRepository.findByToken(refreshToken);
-        if (rt == null) {
+        if (refreshTokenStore.revoke(refreshToken).isEmpty() && !refreshTokenStore.isKnown(refreshToken)) {
             throw new ValidationException("Invalid refresh token");
         }
-        rt.setRevoked(true);
-        refreshTokenRepository.save(rt);
     }
 }
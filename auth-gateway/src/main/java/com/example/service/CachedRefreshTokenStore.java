@@ -0,0 +1,156 @@
+package com.example.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Действующие токены в памяти: refresh и logout проверяются и отзываются без обращения к БД,
+ * а выпуски и отзывы пишутся в refresh_tokens пачками раз в auth.refresh-token.flush-interval-ms.
+ * Надёжны только сброшенные изменения: при аварийной остановке теряется последний интервал
+ * (выпущенные токены придётся получить заново, отозванные снова станут действующими до истечения).
+ * Подходит для одного экземпляра шлюза — отзыв на одном узле другие не видят.
+ */
+@Component
+@ConditionalOnProperty(name = "auth.refresh-token.store", havingValue = "cached")
+public class CachedRefreshTokenStore implements RefreshTokenStore, SmartInitializingSingleton {
+    private static final String INSERT_SQL =
+            "INSERT INTO refresh_tokens (user_id, token, expires_at, revoked, created_at) VALUES (?, ?, ?, FALSE, ?)";
+    private static final String REVOKE_SQL = "UPDATE refresh_tokens SET revoked = TRUE WHERE token = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Map<String, Entry> active = new ConcurrentHashMap<>();
+    private final Queue<Entry> pendingInserts = new ConcurrentLinkedQueue<>();
+    private final Queue<String> pendingRevocations = new ConcurrentLinkedQueue<>();
+    // Не synchronized: под блокировкой идёт запись в БД (см. spring.threads.virtual)
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public CachedRefreshTokenStore(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${auth.refresh-token.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    // Загрузка действующих токенов после создания схемы и до старта веб-сервера
+    @Override
+    public void afterSingletonsInstantiated() {
+        jdbcTemplate.query(
+                "SELECT token, user_id, expires_at, created_at FROM refresh_tokens WHERE revoked = FALSE AND expires_at > ?",
+                rs -> {
+                    Entry entry = new Entry(rs.getString("token"), rs.getLong("user_id"),
+                            rs.getTimestamp("expires_at").toLocalDateTime(),
+                            rs.getTimestamp("created_at").toLocalDateTime());
+                    active.put(entry.hash(), entry);
+                },
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    @Override
+    public String issue(Long userId) {
+        String token = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        Entry entry = new Entry(RefreshTokenStore.hash(token), userId, now.plus(TTL), now);
+        active.put(entry.hash(), entry);
+        pendingInserts.add(entry);
+        return token;
+    }
+
+    // remove() атомарен: из двух параллельных refresh одним токеном успешен только один
+    @Override
+    public Optional<Long> revoke(String token) {
+        String hash = RefreshTokenStore.hash(token);
+        Entry entry = active.remove(hash);
+        if (entry == null || entry.isExpired(LocalDateTime.now())) {
+            return Optional.empty();
+        }
+        pendingRevocations.add(hash);
+        return Optional.of(entry.userId());
+    }
+
+    // Отозванные и истёкшие токены в памяти не держатся: ещё не сброшенный отзыв или строка в таблице
+    @Override
+    public boolean isKnown(String token) {
+        String hash = RefreshTokenStore.hash(token);
+        if (active.containsKey(hash) || pendingRevocations.contains(hash)) {
+            return true;
+        }
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM refresh_tokens WHERE token = ?)", Boolean.class, hash));
+    }
+
+    @Scheduled(fixedDelayString = "${auth.refresh-token.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        flushLock.lock();
+        try {
+            // Сначала выпуски: отзыв токена из той же пачки должен найти его строку
+            writeBatch(pendingInserts, INSERT_SQL, (ps, entry) -> {
+                ps.setLong(1, entry.userId());
+                ps.setString(2, entry.hash());
+                ps.setTimestamp(3, Timestamp.valueOf(entry.expiresAt()));
+                ps.setTimestamp(4, Timestamp.valueOf(entry.createdAt()));
+            });
+            writeBatch(pendingRevocations, REVOKE_SQL, (ps, hash) -> ps.setString(1, hash));
+            LocalDateTime now = LocalDateTime.now();
+            active.values().removeIf(entry -> entry.isExpired(now));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int getPendingWrites() {
+        return pendingInserts.size() + pendingRevocations.size();
+    }
+
+    // Пачка пишется в одной транзакции; при ошибке она целиком возвращается в очередь, и исключение
+    // прерывает flush — отзывы не обгонят выпуски, которые ещё не попали в таблицу
+    private <T> void writeBatch(Queue<T> queue, String sql, ParameterizedPreparedStatementSetter<T> setter) {
+        List<T> items = drain(queue);
+        if (items.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, items, batchSize, setter));
+        } catch (RuntimeException e) {
+            queue.addAll(items);
+            throw e;
+        }
+    }
+
+    private static <T> List<T> drain(Queue<T> queue) {
+        List<T> items = new ArrayList<>();
+        T item;
+        while ((item = queue.poll()) != null) {
+            items.add(item);
+        }
+        return items;
+    }
+
+    private record Entry(String hash, Long userId, LocalDateTime expiresAt, LocalDateTime createdAt) {
+        boolean isExpired(LocalDateTime now) {
+            return expiresAt.isBefore(now);
+        }
+    }
+}
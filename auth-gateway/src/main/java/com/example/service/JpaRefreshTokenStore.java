@@ -0,0 +1,55 @@
+package com.example.service;
+
+import com.example.entity.RefreshToken;
+import com.example.repository.RefreshTokenRepository;
+import com.example.repository.UserRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+// Каждая операция — запросы к refresh_tokens в транзакции вызывающего
+@Component
+@Transactional
+@ConditionalOnProperty(name = "auth.refresh-token.store", havingValue = "database", matchIfMissing = true)
+public class JpaRefreshTokenStore implements RefreshTokenStore {
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+
+    public JpaRefreshTokenStore(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public String issue(Long userId) {
+        String token = UUID.randomUUID().toString();
+        RefreshToken rt = new RefreshToken();
+        rt.setUser(userRepository.getReferenceById(userId));
+        rt.setToken(RefreshTokenStore.hash(token));
+        rt.setExpiresAt(LocalDateTime.now().plus(TTL));
+        rt.setRevoked(false);
+        rt.setCreatedAt(LocalDateTime.now());
+        refreshTokenRepository.save(rt);
+        return token;
+    }
+
+    @Override
+    public Optional<Long> revoke(String token) {
+        RefreshToken rt = refreshTokenRepository.findByToken(RefreshTokenStore.hash(token));
+        if (rt == null || rt.isRevoked() || rt.getExpiresAt().isBefore(LocalDateTime.now())) {
+            return Optional.empty();
+        }
+        rt.setRevoked(true);
+        refreshTokenRepository.save(rt);
+        return Optional.of(rt.getUser().getId());
+    }
+
+    @Override
+    public boolean isKnown(String token) {
+        return refreshTokenRepository.findByToken(RefreshTokenStore.hash(token)) != null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Хранилище refresh-токенов. Сам токен не сохраняется нигде: в таблице и в памяти лежит только его SHA-256.
+ * Реализация выбирается auth.refresh-token.store: database (по умолчанию) или cached.
+ */
+public interface RefreshTokenStore {
+    Duration TTL = Duration.ofDays(7);
+
+    // Выпускает новый токен пользователя и возвращает его в открытом виде
+    String issue(Long userId);
+
+    // Отзывает действующий токен и возвращает id владельца; пусто — токена нет, он уже отозван или истёк
+    Optional<Long> revoke(String token);
+
+    // Выпускался ли такой токен вообще — в любом состоянии, включая отозванные и истёкшие
+    boolean isKnown(String token);
+
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -1,24 +1,84 @@
 package com.example.service;
 
 import com.example.repository.RefreshTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
 
+/**
+ * Очистка refresh_tokens порциями по auth.token-cleanup.chunk-size строк с паузой между ними:
+ * блокировки держатся только на время одной порции, в память ничего не загружается.
+ * Планировщик шлюза держит два потока (spring.task.scheduling.pool.size), чтобы паузы очистки
+ * не задерживали сброс {@link CachedRefreshTokenStore}.
+ */
 @Service
-@Transactional
 public class TokenCleanupService {
     private final RefreshTokenRepository refreshTokenRepository;
+    private final int chunkSize;
+    private final long pauseMs;
+    private final Counter deletedExpired;
+    private final Counter deletedRevoked;
+    private final Timer runTimer;
+    // Скорость последнего прогона, строк/с
+    private final AtomicLong lastRate = new AtomicLong();
 
-    public TokenCleanupService(RefreshTokenRepository refreshTokenRepository) {
+    public TokenCleanupService(RefreshTokenRepository refreshTokenRepository,
+                               @Value("${auth.token-cleanup.chunk-size:1000}") int chunkSize,
+                               @Value("${auth.token-cleanup.pause-ms:100}") long pauseMs,
+                               MeterRegistry registry) {
         this.refreshTokenRepository = refreshTokenRepository;
+        this.chunkSize = chunkSize;
+        this.pauseMs = pauseMs;
+        this.deletedExpired = Counter.builder("auth.token.cleanup.deleted").tag("reason", "expired").register(registry);
+        this.deletedRevoked = Counter.builder("auth.token.cleanup.deleted").tag("reason", "revoked").register(registry);
+        this.runTimer = Timer.builder("auth.token.cleanup").register(registry);
+        Gauge.builder("auth.token.cleanup.rate", lastRate, AtomicLong::get).baseUnit("rows/s").register(registry);
     }
 
-    @Scheduled(cron = "0 0 0 * * ?")
-    public void cleanupExpiredTokens() {
-        refreshTokenRepository.deleteByExpiresAtBefore(LocalDateTime.now());
-        refreshTokenRepository.deleteByRevokedTrue();
+    @Scheduled(cron = "${auth.token-cleanup.cron:0 0 0 * * ?}")
+    public long cleanupExpiredTokens() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        long deleted = purge(() -> refreshTokenRepository.deleteExpiredChunk(now, chunkSize), deletedExpired)
+                + purge(() -> refreshTokenRepository.deleteRevokedChunk(chunkSize), deletedRevoked);
+        long elapsed = System.nanoTime() - start;
+        runTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        lastRate.set(deleted * 1_000_000_000L / Math.max(elapsed, 1));
+        return deleted;
+    }
+
+    // Порции до первой неполной; пауза отдаёт таблицу и журнал БД остальной нагрузке
+    private long purge(IntSupplier chunk, Counter counter) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = chunk.getAsInt();
+            counter.increment(deleted);
+            total += deleted;
+        } while (deleted == chunkSize && pause());
+        return total;
+    }
+
+    private boolean pause() {
+        if (pauseMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            // Остановка приложения: оставшееся удалит следующий прогон
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 }
@@ -0,0 +1,7 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:4
+-- В refresh_tokens.token теперь хранится SHA-256 токена (hex), а не сам токен
+UPDATE refresh_tokens SET token = encode(sha256(convert_to(token, 'UTF8')), 'hex');
+
+-- rollback DELETE FROM refresh_tokens;
@@ -0,0 +1,8 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:5
+-- Для порционной очистки (TokenCleanupService): поиск истёкших и отозванных без полного прохода по таблице
+CREATE INDEX idx_refresh_tokens_expires_at ON refresh_tokens(expires_at);
+CREATE INDEX idx_refresh_tokens_revoked ON refresh_tokens(id) WHERE revoked;
+
+-- rollback DROP INDEX idx_refresh_tokens_revoked; DROP INDEX idx_refresh_tokens_expires_at;
@@ -1,9 +1,12 @@
 package com.example.client;
 
+import com.example.config.HttpClientProperties;
 import com.example.dto.PageDto;
 import com.example.dto.catalog.CategoryDto;
 import com.example.dto.catalog.ProductDto;
 import com.example.util.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,8 +16,11 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -24,10 +30,15 @@ import java.math.BigDecimal;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 
 @SpringBootTest
 @TestPropertySource(properties = {
-        "catalog.url=http://localhost:8081"
+        "catalog.url=http://localhost:8081",
+        "gateway.cache.enabled=false"
 })
 class CatalogClientTest {
 
@@ -400,6 +411,62 @@ class CatalogClientTest {
         verifyAuthorizationHeader();
     }
 
+    // Кэш ответов (в остальных тестах выключен)
+    @Test
+    void getProduct_shouldServeRepeatedReadFromCacheUntilProductIsUpdated() {
+        RestTemplate realRestTemplate = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(realRestTemplate).build();
+        CatalogResponseCache responseCache = new CatalogResponseCache(realRestTemplate, catalogUrl,
+                true, 1 << 20, 1024, 60000, 30000, 1, 4);
+        HttpClientProperties jsonTransport = new HttpClientProperties();
+        jsonTransport.setSmile(false);
+        CatalogClient cachedClient = new CatalogClient(realRestTemplate, catalogUrl, responseCache, new ObjectMapper(),
+                new MappingJackson2SmileHttpMessageConverter(), jsonTransport);
+        server.expect(requestTo(catalogUrl + "/products/1"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess("{\"id\":1,\"name\":\"Test Product\",\"stock\":10}", MediaType.APPLICATION_JSON));
+        server.expect(requestTo(catalogUrl + "/products/1"))
+                .andExpect(method(HttpMethod.PUT))
+                .andRespond(withSuccess("{\"id\":1,\"name\":\"Renamed\",\"stock\":10}", MediaType.APPLICATION_JSON));
+        server.expect(requestTo(catalogUrl + "/products/1"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess("{\"id\":1,\"name\":\"Renamed\",\"stock\":10}", MediaType.APPLICATION_JSON));
+
+        ResponseEntity<ProductDto> first = cachedClient.getProduct(token, 1L);
+        ResponseEntity<ProductDto> second = cachedClient.getProduct(token, 1L);
+        cachedClient.updateProduct(token, 1L, productDto);
+        ResponseEntity<ProductDto> afterUpdate = cachedClient.getProduct(token, 1L);
+
+        assertEquals("Test Product", first.getBody().getName());
+        assertEquals("Test Product", second.getBody().getName());
+        assertEquals("Renamed", afterUpdate.getBody().getName());
+        server.verify();
+    }
+
+    @Test
+    void getProduct_shouldFetchAndCacheSmileBody_whenSmileTransportEnabled() throws Exception {
+        RestTemplate realRestTemplate = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(realRestTemplate).build();
+        CatalogResponseCache responseCache = new CatalogResponseCache(realRestTemplate, catalogUrl,
+                true, 1 << 20, 1024, 60000, 30000, 1, 4);
+        CatalogClient cachedClient = new CatalogClient(realRestTemplate, catalogUrl, responseCache, new ObjectMapper(),
+                new MappingJackson2SmileHttpMessageConverter(), new HttpClientProperties());
+        MediaType smile = new MediaType("application", "x-jackson-smile");
+        byte[] body = new ObjectMapper(new SmileFactory()).writeValueAsBytes(productDto);
+        server.expect(requestTo(catalogUrl + "/products/1"))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(header("Accept", smile.toString()))
+                .andRespond(withSuccess(body, smile));
+
+        ResponseEntity<ProductDto> first = cachedClient.getProduct(token, 1L);
+        ResponseEntity<ProductDto> second = cachedClient.getProduct(token, 1L);
+
+        assertEquals("Test Product", first.getBody().getName());
+        assertEquals("Test Product", second.getBody().getName());
+        assertArrayEquals(body, responseCache.get(responseCache.key("/products/1", null, smile.toString())).body());
+        server.verify();
+    }
+
     private void verifyAuthorizationHeader() {
         verify(restTemplate).exchange(anyString(), any(HttpMethod.class), argThat((HttpEntity<?> entity) ->
                 entity.getHeaders().get("Authorization").contains("Bearer " + token)), (Class<Object>) any());
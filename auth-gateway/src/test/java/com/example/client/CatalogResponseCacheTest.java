@@ -0,0 +1,61 @@
+package com.example.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogResponseCacheTest {
+
+    private CatalogResponseCache responseCache;
+
+    @BeforeEach
+    void setUp() {
+        responseCache = new CatalogResponseCache(new RestTemplate(), "http://localhost:8081",
+                true, 1 << 20, 1024, 60000, 30000, 1, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        responseCache.shutdown();
+    }
+
+    @Test
+    void put_shouldStoreCatalogReadResponse() {
+        // Набор заголовков, с которым каталог отвечает на GET /products через свой SecurityFilterChain
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setETag("\"5-1714564800000000\"");
+        headers.setCacheControl("no-cache");
+        headers.set("X-Content-Type-Options", "nosniff");
+        headers.set("X-XSS-Protection", "0");
+        headers.set("X-Frame-Options", "DENY");
+        String key = responseCache.key("/products", "page=0", null);
+
+        responseCache.put(key, headers, "{}".getBytes(), responseCache.generation());
+
+        CatalogResponseCache.CachedResponse cached = responseCache.get(key);
+        assertThat(cached).isNotNull();
+        assertThat(cached.headers().getETag()).isEqualTo("\"5-1714564800000000\"");
+        assertThat(cached.headers().getCacheControl()).isEqualTo("no-cache");
+        assertThat(cached.headers().containsKey("X-Frame-Options")).isFalse();
+    }
+
+    @Test
+    void put_shouldSkipSecurityDefaultNoStoreResponse() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setCacheControl("no-cache, no-store, max-age=0, must-revalidate");
+        headers.setPragma("no-cache");
+        headers.setExpires(0);
+        String key = responseCache.key("/products", "page=0", null);
+
+        responseCache.put(key, headers, "{}".getBytes(), responseCache.generation());
+
+        assertThat(responseCache.get(key)).isNull();
+    }
+}
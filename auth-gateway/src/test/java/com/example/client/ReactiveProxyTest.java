@@ -0,0 +1,121 @@
+package com.example.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveProxyTest {
+
+    private final AtomicReference<ClientRequest> lastRequest = new AtomicReference<>();
+    private ClientResponse nextResponse;
+    private ReactiveProxy reactiveProxy;
+
+    @BeforeEach
+    void setUp() {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    lastRequest.set(request);
+                    return Mono.just(nextResponse);
+                })
+                .build();
+        reactiveProxy = new ReactiveProxy(webClient, "http://localhost:8081", "http://localhost:8082", 16, 64);
+    }
+
+    @Test
+    void proxy_shouldRouteAndStreamStatusHeadersAndBody() throws Exception {
+        // Тело длиннее буфера — уходит клиенту несколькими порциями
+        String body = "{\"content\":[{\"id\":1,\"name\":\"Product with a name longer than the buffer\"}]}";
+        nextResponse = ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .header(HttpHeaders.ETAG, "\"1-2\"")
+                .header(HttpHeaders.CONNECTION, "keep-alive")
+                .body(body)
+                .build();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/catalog/products");
+        request.setQueryString("page=0&size=10");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer test-token");
+        request.addHeader(HttpHeaders.HOST, "gateway");
+        request.addHeader(HttpHeaders.COOKIE, "session=1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        reactiveProxy.proxy(request, response).block();
+
+        assertThat(lastRequest.get().url().toString()).isEqualTo("http://localhost:8081/products?page=0&size=10");
+        assertThat(lastRequest.get().headers().getFirst(HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer test-token");
+        assertThat(lastRequest.get().headers().containsKey(HttpHeaders.HOST)).isFalse();
+        assertThat(lastRequest.get().headers().containsKey(HttpHeaders.COOKIE)).isFalse();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("\"1-2\"");
+        assertThat(response.containsHeader(HttpHeaders.CONNECTION)).isFalse();
+        assertThat(response.getContentAsString(StandardCharsets.UTF_8)).isEqualTo(body);
+    }
+
+    @Test
+    void proxy_shouldPassErrorStatusWithoutThrowing() throws Exception {
+        nextResponse = ClientResponse.create(HttpStatus.UNPROCESSABLE_ENTITY)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"message\":\"Insufficient stock for product 1\"}")
+                .build();
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/order/orders");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent("{\"items\":[]}".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        reactiveProxy.proxy(request, response).block();
+
+        assertThat(lastRequest.get().method()).isEqualTo(HttpMethod.POST);
+        assertThat(lastRequest.get().url().toString()).isEqualTo("http://localhost:8082/orders");
+        assertThat(lastRequest.get().headers().getContentLength()).isEqualTo(12);
+        assertThat(response.getStatus()).isEqualTo(422);
+        assertThat(response.getContentAsString()).contains("Insufficient stock");
+    }
+
+    @Test
+    void proxy_shouldRejectOversizedRequestBeforeReadingIt() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/order/orders");
+        request.setContent(new byte[65]);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        reactiveProxy.proxy(request, response).block();
+
+        assertThat(response.getStatus()).isEqualTo(413);
+        assertThat(lastRequest.get()).isNull();
+    }
+
+    @Test
+    void proxy_shouldAnswerBadGateway_whenServiceUnreachable() {
+        WebClient failing = WebClient.builder()
+                .exchangeFunction(request -> Mono.error(new IllegalStateException("Connection refused")))
+                .build();
+        reactiveProxy = new ReactiveProxy(failing, "http://localhost:8081", "http://localhost:8082", 16, 64);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        reactiveProxy.proxy(new MockHttpServletRequest("GET", "/catalog/products"), response).block();
+
+        assertThat(response.getStatus()).isEqualTo(502);
+    }
+
+    @Test
+    void proxy_shouldNotExposeActuator() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        reactiveProxy.proxy(new MockHttpServletRequest("GET", "/catalog/actuator/health"), response).block();
+
+        assertThat(response.getStatus()).isEqualTo(404);
+        assertThat(lastRequest.get()).isNull();
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class StreamingProxyTest {
+
+    private MockRestServiceServer server;
+    private StreamingProxy streamingProxy;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        CatalogResponseCache responseCache = new CatalogResponseCache(restTemplate, "http://localhost:8081",
+                true, 1 << 20, 1024, 60000, 30000, 1, 4);
+        streamingProxy = new StreamingProxy(restTemplate, "http://localhost:8081", "http://localhost:8082", 16,
+                responseCache);
+    }
+
+    @Test
+    void proxy_shouldCopyStatusHeadersAndBody() throws Exception {
+        String body = "{\"content\":[{\"id\":1,\"name\":\"Product with a name longer than the buffer\"}]}";
+        server.expect(requestTo("http://localhost:8081/products?page=0&size=10"))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(header("Authorization", "Bearer test-token"))
+                .andRespond(withSuccess(body, MediaType.APPLICATION_JSON));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/catalog/products");
+        request.setQueryString("page=0&size=10");
+        request.addHeader("Authorization", "Bearer test-token");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        streamingProxy.proxy(request, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentType()).isEqualTo(MediaType.APPLICATION_JSON_VALUE);
+        assertThat(response.getContentAsString()).isEqualTo(body);
+        server.verify();
+    }
+
+    @Test
+    void proxy_shouldStreamRequestBodyAndPassErrorStatus() throws Exception {
+        String body = "{\"items\":[{\"productId\":1,\"quantity\":2}]}";
+        server.expect(requestTo("http://localhost:8082/orders"))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().json(body))
+                .andRespond(withStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body("{\"message\":\"Insufficient stock for product 1\"}"));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/order/orders");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body.getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        streamingProxy.proxy(request, response);
+
+        assertThat(response.getStatus()).isEqualTo(422);
+        assertThat(response.getContentAsString()).contains("Insufficient stock");
+        server.verify();
+    }
+
+    @Test
+    void proxy_shouldServeRepeatedCatalogGetFromCache() throws Exception {
+        String body = "{\"id\":1,\"name\":\"Product\"}";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag("\"v1\"");
+        server.expect(requestTo("http://localhost:8081/products/1?a=1&b=2"))
+                .andRespond(withSuccess(body, MediaType.APPLICATION_JSON).headers(headers));
+
+        MockHttpServletRequest first = new MockHttpServletRequest("GET", "/catalog/products/1");
+        first.setQueryString("a=1&b=2");
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        streamingProxy.proxy(first, firstResponse);
+
+        // Тот же запрос с другим порядком параметров — второго обращения к каталогу нет
+        MockHttpServletRequest second = new MockHttpServletRequest("GET", "/catalog/products/1");
+        second.setQueryString("b=2&a=1");
+        MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+        streamingProxy.proxy(second, secondResponse);
+
+        assertThat(firstResponse.getHeader("X-Cache")).isEqualTo("MISS");
+        assertThat(secondResponse.getStatus()).isEqualTo(200);
+        assertThat(secondResponse.getHeader("X-Cache")).isEqualTo("HIT");
+        assertThat(secondResponse.getHeader(HttpHeaders.ETAG)).isEqualTo("\"v1\"");
+        assertThat(secondResponse.getContentAsString()).isEqualTo(body);
+        server.verify();
+    }
+
+    @Test
+    void proxy_shouldAnswerNotModifiedFromCacheAndSkipNoStore() throws Exception {
+        HttpHeaders etag = new HttpHeaders();
+        etag.setETag("\"v1\"");
+        HttpHeaders noStore = new HttpHeaders();
+        noStore.setCacheControl("no-store");
+        server.expect(requestTo("http://localhost:8081/categories"))
+                .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON).headers(etag));
+        server.expect(requestTo("http://localhost:8081/products"))
+                .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON).headers(noStore));
+        server.expect(requestTo("http://localhost:8081/products"))
+                .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON).headers(noStore));
+
+        streamingProxy.proxy(new MockHttpServletRequest("GET", "/catalog/categories"), new MockHttpServletResponse());
+        MockHttpServletRequest conditional = new MockHttpServletRequest("GET", "/catalog/categories");
+        conditional.addHeader(HttpHeaders.IF_NONE_MATCH, "\"v1\"");
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        streamingProxy.proxy(conditional, notModified);
+        streamingProxy.proxy(new MockHttpServletRequest("GET", "/catalog/products"), new MockHttpServletResponse());
+        streamingProxy.proxy(new MockHttpServletRequest("GET", "/catalog/products"), new MockHttpServletResponse());
+
+        assertThat(notModified.getStatus()).isEqualTo(304);
+        assertThat(notModified.getContentAsByteArray()).isEmpty();
+        server.verify();
+    }
+
+    @Test
+    void proxy_shouldInvalidateCachedCollectionAfterSuccessfulWrite() throws Exception {
+        server.expect(requestTo("http://localhost:8081/products?page=0"))
+                .andRespond(withSuccess("{\"content\":[{\"id\":1,\"price\":10}]}", MediaType.APPLICATION_JSON));
+        server.expect(requestTo("http://localhost:8081/categories"))
+                .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+        server.expect(requestTo("http://localhost:8081/products/1"))
+                .andExpect(method(HttpMethod.PUT))
+                .andRespond(withSuccess("{\"id\":1,\"price\":12}", MediaType.APPLICATION_JSON));
+        server.expect(requestTo("http://localhost:8081/products?page=0"))
+                .andRespond(withSuccess("{\"content\":[{\"id\":1,\"price\":12}]}", MediaType.APPLICATION_JSON));
+
+        MockHttpServletRequest listing = new MockHttpServletRequest("GET", "/catalog/products");
+        listing.setQueryString("page=0");
+        streamingProxy.proxy(listing, new MockHttpServletResponse());
+        streamingProxy.proxy(new MockHttpServletRequest("GET", "/catalog/categories"), new MockHttpServletResponse());
+        MockHttpServletRequest update = new MockHttpServletRequest("PUT", "/catalog/products/1");
+        update.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        update.setContent("{\"price\":12}".getBytes());
+        streamingProxy.proxy(update, new MockHttpServletResponse());
+        MockHttpServletResponse afterUpdate = new MockHttpServletResponse();
+        streamingProxy.proxy(listing, afterUpdate);
+        // Категории запись в товары не затрагивает — ответ по-прежнему из кэша
+        MockHttpServletResponse categories = new MockHttpServletResponse();
+        streamingProxy.proxy(new MockHttpServletRequest("GET", "/catalog/categories"), categories);
+
+        assertThat(afterUpdate.getHeader("X-Cache")).isEqualTo("MISS");
+        assertThat(afterUpdate.getContentAsString()).contains("\"price\":12");
+        assertThat(categories.getHeader("X-Cache")).isEqualTo("HIT");
+        server.verify();
+    }
+
+    @Test
+    void proxy_shouldNotExposeActuator() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/order/actuator/metrics");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        streamingProxy.proxy(request, response);
+
+        assertThat(response.getStatus()).isEqualTo(404);
+        server.verify();
+    }
+
+    @Test
+    void proxy_shouldForwardOnlyAllowedRequestHeaders() throws Exception {
+        server.expect(requestTo("http://localhost:8082/orders"))
+                .andExpect(header("Authorization", "Bearer test-token"))
+                .andExpect(headerDoesNotExist("Cookie"))
+                .andExpect(headerDoesNotExist("X-Forwarded-For"))
+                .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/order/orders");
+        request.addHeader("Authorization", "Bearer test-token");
+        request.addHeader("Cookie", "session=1");
+        request.addHeader("X-Forwarded-For", "10.0.0.1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        streamingProxy.proxy(request, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        server.verify();
+    }
+}
@@ -1,11 +1,10 @@
 package com.example.service;
 
 import com.example.dto.TokenResponse;
-import com.example.entity.RefreshToken;
 import com.example.entity.Role;
 import com.example.entity.User;
+import com.example.exception.ServiceUnavailableException;
 import com.example.exception.ValidationException;
-import com.example.repository.RefreshTokenRepository;
 import com.example.repository.UserRepository;
 import com.example.util.JwtUtil;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,9 +12,8 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
-import java.time.LocalDateTime;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -27,19 +25,18 @@ public class AuthServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private BCryptPasswordEncoder encoder;
+    private PasswordHasher encoder;
 
     @Mock
     private JwtUtil jwtUtil;
 
     @Mock
-    private RefreshTokenRepository refreshTokenRepository;
+    private RefreshTokenStore refreshTokenStore;
 
     @InjectMocks
     private AuthService authService;
 
     private User user;
-    private RefreshToken refreshToken;
 
     @BeforeEach
     void setUp() {
@@ -55,13 +52,6 @@ public class AuthServiceTest {
         user.setRole(Role.ROLE_USER);
         user.setActive(true);
 
-        refreshToken = new RefreshToken();
-        refreshToken.setToken("refresh-token");
-        refreshToken.setUser(user);
-        refreshToken.setExpiresAt(LocalDateTime.now().plusDays(7));
-        refreshToken.setRevoked(false);
-        refreshToken.setCreatedAt(LocalDateTime.now());
-
         when(jwtUtil.getExpiration()).thenReturn(3600000L); // 1 час
         when(encoder.encode("password")).thenReturn("hashedPassword");
         when(jwtUtil.generateAccessToken("testuser", 1L, "User Test ", "ROLE_USER"))
@@ -98,16 +88,47 @@ public class AuthServiceTest {
         when(userRepository.findByUsername("testuser")).thenReturn(user);
         when(encoder.matches("password", "password")).thenReturn(true);
         when(jwtUtil.generateAccessToken("testuser", 1L, "Test User", "ROLE_USER")).thenReturn("access-token");
-        when(refreshTokenRepository.save(any(RefreshToken.class))).thenReturn(refreshToken);
+        when(refreshTokenStore.issue(1L)).thenReturn("refresh-token");
 
         TokenResponse result = authService.login("testuser", "password");
 
         assertThat(result).isNotNull();
         assertThat(result.getAccessToken()).isEqualTo("access-token");
-        assertThat(result.getRefreshToken()).isNotNull();
+        assertThat(result.getRefreshToken()).isEqualTo("refresh-token");
         assertThat(result.getTokenType()).isEqualTo("Bearer");
         assertThat(result.getExpiresIn()).isEqualTo(3600000L);
-        verify(refreshTokenRepository).save(any(RefreshToken.class));
+        verify(refreshTokenStore).issue(1L);
+    }
+
+    @Test
+    void login_shouldRehashPassword_whenCostChanged() {
+        user.setPasswordHash("$2a$04$oldHash");
+        when(userRepository.findByUsername("testuser")).thenReturn(user);
+        when(encoder.matches("password", "$2a$04$oldHash")).thenReturn(true);
+        when(encoder.needsRehash("$2a$04$oldHash")).thenReturn(true);
+        when(encoder.encode("password")).thenReturn("$2a$10$newHash");
+        when(refreshTokenStore.issue(1L)).thenReturn("refresh-token");
+
+        authService.login("testuser", "password");
+
+        assertThat(user.getPasswordHash()).isEqualTo("$2a$10$newHash");
+        verify(userRepository).save(user);
+    }
+
+    @Test
+    void login_shouldSucceedWithoutRehash_whenHasherSaturated() {
+        user.setPasswordHash("$2a$04$oldHash");
+        when(userRepository.findByUsername("testuser")).thenReturn(user);
+        when(encoder.matches("password", "$2a$04$oldHash")).thenReturn(true);
+        when(encoder.needsRehash("$2a$04$oldHash")).thenReturn(true);
+        when(encoder.encode("password")).thenThrow(new ServiceUnavailableException("busy", 1));
+        when(refreshTokenStore.issue(1L)).thenReturn("refresh-token");
+
+        TokenResponse result = authService.login("testuser", "password");
+
+        assertThat(result).isNotNull();
+        assertThat(user.getPasswordHash()).isEqualTo("$2a$04$oldHash");
+        verify(userRepository, never()).save(user);
     }
 
     @Test
@@ -137,58 +158,62 @@ public class AuthServiceTest {
     // refresh tests
     @Test
     void refresh_shouldReturnNewTokenResponse() {
-        when(refreshTokenRepository.findByToken("refresh-token")).thenReturn(refreshToken);
+        when(refreshTokenStore.revoke("refresh-token")).thenReturn(Optional.of(1L));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(jwtUtil.generateAccessToken("testuser", 1L, "Test User", "ROLE_USER")).thenReturn("new-access-token");
-        when(refreshTokenRepository.save(any(RefreshToken.class))).thenReturn(refreshToken);
+        when(refreshTokenStore.issue(1L)).thenReturn("new-refresh-token");
 
         TokenResponse result = authService.refresh("refresh-token");
 
         assertThat(result).isNotNull();
         assertThat(result.getAccessToken()).isEqualTo("new-access-token");
-        assertThat(result.getRefreshToken()).isNotNull();
+        assertThat(result.getRefreshToken()).isEqualTo("new-refresh-token");
         assertThat(result.getTokenType()).isEqualTo("Bearer");
         assertThat(result.getExpiresIn()).isEqualTo(3600000L);
-        verify(refreshTokenRepository, times(2)).save(any(RefreshToken.class)); // Отзыв старого и создание нового
+        verify(refreshTokenStore).revoke("refresh-token"); // Отзыв старого и создание нового
+        verify(refreshTokenStore).issue(1L);
     }
 
     @Test
-    void refresh_shouldThrowValidationException_whenTokenNotFound() {
-        when(refreshTokenRepository.findByToken("refresh-token")).thenReturn(null);
+    void refresh_shouldThrowValidationException_whenTokenInvalid() {
+        when(refreshTokenStore.revoke("refresh-token")).thenReturn(Optional.empty());
 
         assertThrows(ValidationException.class, () -> authService.refresh("refresh-token"));
+        verify(refreshTokenStore, never()).issue(any());
     }
 
     @Test
-    void refresh_shouldThrowValidationException_whenTokenRevoked() {
-        refreshToken.setRevoked(true);
-        when(refreshTokenRepository.findByToken("refresh-token")).thenReturn(refreshToken);
+    void refresh_shouldThrowValidationException_whenUserDeleted() {
+        when(refreshTokenStore.revoke("refresh-token")).thenReturn(Optional.of(1L));
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
 
         assertThrows(ValidationException.class, () -> authService.refresh("refresh-token"));
     }
 
+    // logout tests
     @Test
-    void refresh_shouldThrowValidationException_whenTokenExpired() {
-        refreshToken.setExpiresAt(LocalDateTime.now().minusDays(1));
-        when(refreshTokenRepository.findByToken("refresh-token")).thenReturn(refreshToken);
+    void logout_shouldRevokeToken() {
+        when(refreshTokenStore.revoke("refresh-token")).thenReturn(Optional.of(1L));
 
-        assertThrows(ValidationException.class, () -> authService.refresh("refresh-token"));
+        authService.logout("refresh-token");
+
+        verify(refreshTokenStore).revoke("refresh-token");
     }
 
-    // logout tests
     @Test
-    void logout_shouldRevokeToken() {
-        when(refreshTokenRepository.findByToken("refresh-token")).thenReturn(refreshToken);
-        when(refreshTokenRepository.save(any(RefreshToken.class))).thenReturn(refreshToken);
+    void logout_shouldSucceed_whenTokenAlreadyRevokedOrExpired() {
+        when(refreshTokenStore.revoke("refresh-token")).thenReturn(Optional.empty());
+        when(refreshTokenStore.isKnown("refresh-token")).thenReturn(true);
 
         authService.logout("refresh-token");
 
-        assertThat(refreshToken.isRevoked()).isTrue();
-        verify(refreshTokenRepository).save(any(RefreshToken.class));
+        verify(refreshTokenStore).isKnown("refresh-token");
     }
 
     @Test
     void logout_shouldThrowValidationException_whenTokenNotFound() {
-        when(refreshTokenRepository.findByToken("refresh-token")).thenReturn(null);
+        when(refreshTokenStore.revoke("refresh-token")).thenReturn(Optional.empty());
+        when(refreshTokenStore.isKnown("refresh-token")).thenReturn(false);
 
         assertThrows(ValidationException.class, () -> authService.logout("refresh-token"));
     }
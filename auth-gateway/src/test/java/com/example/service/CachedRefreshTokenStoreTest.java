@@ -0,0 +1,111 @@
+package com.example.service;
+
+import com.example.entity.Role;
+import com.example.entity.User;
+import com.example.repository.RefreshTokenRepository;
+import com.example.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(excludeAutoConfiguration = LiquibaseAutoConfiguration.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class CachedRefreshTokenStoreTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private CachedRefreshTokenStore store;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("testuser");
+        user.setEmail("test@example.com");
+        user.setPasswordHash("hash");
+        user.setRole(Role.ROLE_USER);
+        user.setFirstName("Test");
+        user.setLastName("User");
+        user.setActive(true);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        userId = userRepository.saveAndFlush(user).getId();
+
+        store = newStore();
+    }
+
+    @Test
+    void revoke_shouldSucceedOnlyOnce() {
+        String token = store.issue(userId);
+
+        assertThat(store.revoke(token)).contains(userId);
+        assertThat(store.revoke(token)).isEmpty();
+        assertThat(store.revoke("unknown")).isEmpty();
+    }
+
+    @Test
+    void flush_shouldWriteHashedTokensInBatches() {
+        String kept = store.issue(userId);
+        String revoked = store.issue(userId);
+        store.revoke(revoked);
+        assertThat(store.getPendingWrites()).isEqualTo(3);
+
+        store.flush();
+
+        assertThat(store.getPendingWrites()).isZero();
+        assertThat(refreshTokenRepository.findByToken(kept)).isNull();
+        assertThat(refreshTokenRepository.findByToken(RefreshTokenStore.hash(kept)).isRevoked()).isFalse();
+        assertThat(refreshTokenRepository.findByToken(RefreshTokenStore.hash(revoked)).isRevoked()).isTrue();
+    }
+
+    @Test
+    void afterSingletonsInstantiated_shouldLoadOnlyActiveTokens() {
+        String kept = store.issue(userId);
+        String revoked = store.issue(userId);
+        store.revoke(revoked);
+        store.flush();
+
+        CachedRefreshTokenStore restarted = newStore();
+
+        assertThat(restarted.revoke(revoked)).isEmpty();
+        assertThat(restarted.revoke(kept)).isEqualTo(Optional.of(userId));
+    }
+
+    @Test
+    void isKnown_shouldCoverRevokedTokens_beforeAndAfterFlush() {
+        String token = store.issue(userId);
+        store.revoke(token);
+
+        assertThat(store.isKnown(token)).isTrue();
+        store.flush();
+        assertThat(store.isKnown(token)).isTrue();
+        assertThat(newStore().isKnown(token)).isTrue();
+        assertThat(store.isKnown("unknown")).isFalse();
+    }
+
+    private CachedRefreshTokenStore newStore() {
+        CachedRefreshTokenStore created = new CachedRefreshTokenStore(jdbcTemplate, transactionTemplate, 500);
+        created.afterSingletonsInstantiated();
+        return created;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.service;
+
+import com.example.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PasswordHasherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void tearDown() {
+        hasher.shutdown();
+    }
+
+    @Test
+    void matches_shouldVerifyOnPoolAndDetectCostChange() {
+        String oldHash = new BCryptPasswordEncoder(4).encode("password");
+        hasher = new PasswordHasher(new BCryptPasswordEncoder(5), 5, 2, 4, 5000, 1, registry);
+
+        assertThat(hasher.matches("password", oldHash)).isTrue();
+        assertThat(hasher.matches("wrong", oldHash)).isFalse();
+        assertThat(hasher.needsRehash(oldHash)).isTrue();
+        assertThat(hasher.needsRehash(hasher.encode("password"))).isFalse();
+        assertThat(registry.get("auth.password.hash").tag("operation", "matches").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void encode_shouldFailFastWith503_whenQueueFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BCryptPasswordEncoder encoder = mock(BCryptPasswordEncoder.class);
+        when(encoder.encode(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "hash";
+        });
+        hasher = new PasswordHasher(encoder, 10, 1, 1, 5000, 3, registry);
+
+        // Один вызов занимает единственный поток, второй ждёт в очереди
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hasher.encode("a"));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hasher.encode("b"));
+        while (registry.get("auth.password.queue").gauge().value() < 1) {
+            Thread.sleep(5);
+        }
+
+        ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class, () -> hasher.encode("c"));
+        release.countDown();
+
+        assertThat(e.getRetryAfterSeconds()).isEqualTo(3);
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("hash");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("hash");
+        assertThat(registry.get("auth.password.rejected").counter().count()).isEqualTo(1);
+    }
+}
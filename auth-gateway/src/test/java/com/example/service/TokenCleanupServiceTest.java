@@ -0,0 +1,77 @@
+package com.example.service;
+
+import com.example.entity.RefreshToken;
+import com.example.entity.Role;
+import com.example.entity.User;
+import com.example.repository.RefreshTokenRepository;
+import com.example.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(excludeAutoConfiguration = LiquibaseAutoConfiguration.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class TokenCleanupServiceTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("testuser");
+        user.setEmail("test@example.com");
+        user.setPasswordHash("hash");
+        user.setRole(Role.ROLE_USER);
+        user.setFirstName("Test");
+        user.setLastName("User");
+        user.setActive(true);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        userRepository.save(user);
+    }
+
+    @Test
+    void cleanupExpiredTokens_shouldDeleteExpiredAndRevokedInChunks() {
+        for (int i = 0; i < 5; i++) {
+            saveToken("expired-" + i, LocalDateTime.now().minusDays(1), false);
+        }
+        for (int i = 0; i < 3; i++) {
+            saveToken("revoked-" + i, LocalDateTime.now().plusDays(1), true);
+        }
+        saveToken("active", LocalDateTime.now().plusDays(1), false);
+        refreshTokenRepository.flush();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TokenCleanupService service = new TokenCleanupService(refreshTokenRepository, 2, 0, registry);
+
+        long deleted = service.cleanupExpiredTokens();
+
+        assertThat(deleted).isEqualTo(8);
+        assertThat(refreshTokenRepository.findAll()).extracting(RefreshToken::getToken).containsExactly("active");
+        assertThat(registry.get("auth.token.cleanup.deleted").tag("reason", "expired").counter().count()).isEqualTo(5);
+        assertThat(registry.get("auth.token.cleanup.deleted").tag("reason", "revoked").counter().count()).isEqualTo(3);
+    }
+
+    private void saveToken(String token, LocalDateTime expiresAt, boolean revoked) {
+        RefreshToken rt = new RefreshToken();
+        rt.setUser(user);
+        rt.setToken(token);
+        rt.setExpiresAt(expiresAt);
+        rt.setRevoked(revoked);
+        rt.setCreatedAt(LocalDateTime.now());
+        refreshTokenRepository.save(rt);
+    }
+}
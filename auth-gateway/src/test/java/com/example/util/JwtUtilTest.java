@@ -0,0 +1,83 @@
+package com.example.util;
+
+import com.example.exception.JwtValidationException;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtUtilTest {
+
+    private KeyPair keyPair;
+    private JwtUtil jwtUtil;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+        jwtUtil = new JwtUtil(keyPair.getPrivate(), keyPair.getPublic());
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600000L);
+        ReflectionTestUtils.setField(jwtUtil, "issuer", "test");
+        registry = new SimpleMeterRegistry();
+        jwtUtil.bindTo(registry);
+    }
+
+    @Test
+    void validateToken_shouldReturnCachedClaims_onRepeatedToken() {
+        String token = jwtUtil.generateAccessToken("user", 1L, "User", "ROLE_USER");
+
+        Claims first = jwtUtil.validateToken(token);
+        Claims second = jwtUtil.validateToken(token);
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.get("uid", Long.class)).isEqualTo(1L);
+        assertThat(registry.get("cache.gets").tag("cache", "jwt.verified-tokens").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void validateToken_shouldRejectExpiredToken_afterItWasCached() throws Exception {
+        Instant now = Instant.now();
+        String token = Jwts.builder()
+                .subject("user")
+                .claim("role", "ROLE_USER")
+                .issuedAt(Date.from(now))
+                .expiration(Date.from(now.plusSeconds(1)))
+                .signWith(keyPair.getPrivate(), Jwts.SIG.RS256)
+                .compact();
+        jwtUtil.validateToken(token);
+
+        Thread.sleep(1500);
+
+        JwtValidationException e = assertThrows(JwtValidationException.class, () -> jwtUtil.validateToken(token));
+        assertThat(e.getMessage()).isEqualTo("Token has expired");
+    }
+
+    @Test
+    void validateToken_shouldRejectTamperedToken_evenWhenOriginalIsCached() {
+        String token = jwtUtil.generateAccessToken("user", 1L, "User", "ROLE_USER");
+        jwtUtil.validateToken(token);
+        char last = token.charAt(token.length() - 2);
+        String tampered = token.substring(0, token.length() - 2) + (last == 'A' ? 'B' : 'A') + token.charAt(token.length() - 1);
+
+        assertThrows(JwtValidationException.class, () -> jwtUtil.validateToken(tampered));
+    }
+
+    @Test
+    void validateToken_shouldThrowJwtValidationException_forEmptyToken() {
+        assertThrows(JwtValidationException.class, () -> jwtUtil.validateToken(null));
+        assertThrows(JwtValidationException.class, () -> jwtUtil.validateToken(""));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.config;
+
+import com.example.repository.SlicingJpaRepository;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+// Отдельно от ApplicationCatalog, чтобы не тянуть JPA в @WebMvcTest
+@Configuration
+@EnableJpaRepositories(basePackages = "com.example.repository", repositoryBaseClass = SlicingJpaRepository.class)
+public class JpaConfig {
+}
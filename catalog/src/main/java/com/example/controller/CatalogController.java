@@ -2,19 +2,37 @@ package com.example.controller;
 
 
 import com.example.dto.catalog.CategoryDto;
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.catalog.ProductDto;
+import com.example.dto.catalog.StockReservationDto;
+import com.example.dto.catalog.StockReservationRequestDto;
+import com.example.exception.StockReservationException;
+import com.example.repository.ContentVersion;
 import com.example.service.CatalogService;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 
 @RestController
 public class CatalogController {
 
+    // Без явного Cache-Control Spring Security пишет no-store, и кэш шлюза не сохраняет ни одного ответа.
+    // no-cache разрешает хранить ответ, а клиентам велит перепроверять его по ETag
+    private static final CacheControl READ_CACHE_CONTROL = CacheControl.noCache();
+
     private final CatalogService catalogService;
 
     public CatalogController(CatalogService catalogService) {
@@ -22,8 +40,24 @@ public class CatalogController {
     }
 
     @GetMapping("/categories")
-    public PageDto<CategoryDto> getCategories(Pageable pageable, @RequestParam(required = false) String name) {
-        return catalogService.getCategories(pageable, name);
+    public ResponseEntity<PageDto<CategoryDto>> getCategories(Pageable pageable,
+                                                              @RequestParam(required = false) String name,
+                                                              @RequestParam(defaultValue = "true") boolean withTotal,
+                                                              WebRequest request) {
+        // Без total нет и агрегата версии: страница отдаётся без валидаторов
+        if (!withTotal) {
+            return ResponseEntity.ok().cacheControl(READ_CACHE_CONTROL)
+                    .body(catalogService.getCategories(pageable, name, false));
+        }
+        // Агрегат count + max(updated_at) заменяет count(*) страницы, поэтому валидатор бесплатен.
+        // Версия снимается до чтения страницы: при гонке ETag окажется старее тела, а не наоборот.
+        // Last-Modified не отдаётся: удаление строки не двигает max(updated_at), а count в ETag меняется
+        ContentVersion version = catalogService.getCategoriesVersion(name);
+        if (request.checkNotModified(etag(version))) {
+            return notModified();
+        }
+        return ResponseEntity.ok().cacheControl(READ_CACHE_CONTROL).eTag(etag(version))
+                .body(catalogService.getCategories(pageable, name, version));
     }
 
     @PostMapping("/categories")
@@ -32,8 +66,15 @@ public class CatalogController {
     }
 
     @GetMapping("/categories/{id}")
-    public CategoryDto getCategory(@PathVariable Long id) {
-        return catalogService.getCategory(id);
+    public ResponseEntity<CategoryDto> getCategory(@PathVariable Long id, WebRequest request) {
+        if (isConditional(request)) {
+            LocalDateTime updatedAt = catalogService.getCategoryUpdatedAt(id);
+            if (request.checkNotModified(etag(id, updatedAt), epochMilli(updatedAt))) {
+                return notModified();
+            }
+        }
+        CategoryDto dto = catalogService.getCategory(id);
+        return withValidators(etag(id, dto.getUpdatedAt()), dto.getUpdatedAt()).body(dto);
     }
 
     @PutMapping("/categories/{id}")
@@ -48,13 +89,36 @@ public class CatalogController {
     }
 
     @GetMapping("/products")
-    public PageDto<ProductDto> getProducts(Pageable pageable,
-                                           @RequestParam(required = false) Long categoryId,
-                                           @RequestParam(required = false) String q,
-                                           @RequestParam(required = false) BigDecimal minPrice,
-                                           @RequestParam(required = false) BigDecimal maxPrice,
-                                           @RequestParam(required = false) Boolean onlyActive) {
-        return catalogService.getProducts(pageable, categoryId, q, minPrice, maxPrice, onlyActive);
+    public ResponseEntity<PageDto<ProductDto>> getProducts(Pageable pageable,
+                                                           @RequestParam(required = false) Long categoryId,
+                                                           @RequestParam(required = false) String q,
+                                                           @RequestParam(required = false) BigDecimal minPrice,
+                                                           @RequestParam(required = false) BigDecimal maxPrice,
+                                                           @RequestParam(required = false) Boolean onlyActive,
+                                                           @RequestParam(defaultValue = "true") boolean withTotal,
+                                                           WebRequest request) {
+        if (!withTotal || catalogService.isFullTextQuery(q)) {
+            return ResponseEntity.ok().cacheControl(READ_CACHE_CONTROL).body(
+                    catalogService.getProducts(pageable, categoryId, q, minPrice, maxPrice, onlyActive, withTotal));
+        }
+        ContentVersion version = catalogService.getProductsVersion(categoryId, q, minPrice, maxPrice, onlyActive);
+        if (request.checkNotModified(etag(version))) {
+            return notModified();
+        }
+        return ResponseEntity.ok().cacheControl(READ_CACHE_CONTROL).eTag(etag(version))
+                .body(catalogService.getProducts(pageable, categoryId, q, minPrice, maxPrice, onlyActive, version));
+    }
+
+    @GetMapping("/products/scroll")
+    public ResponseEntity<CursorPageDto<ProductDto>> scrollProducts(@RequestParam(required = false) String after,
+                                                    @RequestParam(defaultValue = "20") int size,
+                                                    @RequestParam(required = false) Long categoryId,
+                                                    @RequestParam(required = false) String q,
+                                                    @RequestParam(required = false) BigDecimal minPrice,
+                                                    @RequestParam(required = false) BigDecimal maxPrice,
+                                                    @RequestParam(required = false) Boolean onlyActive) {
+        return ResponseEntity.ok().cacheControl(READ_CACHE_CONTROL)
+                .body(catalogService.scrollProducts(after, size, categoryId, q, minPrice, maxPrice, onlyActive));
     }
 
     @PostMapping("/products")
@@ -62,9 +126,22 @@ public class CatalogController {
         return ResponseEntity.status(201).body(catalogService.createProduct(dto));
     }
 
+    @GetMapping("/products/batch")
+    public List<ProductDto> getProductsByIds(@RequestParam List<Long> ids) {
+        return catalogService.getProductsByIds(ids);
+    }
+
     @GetMapping("/products/{id}")
-    public ProductDto getProduct(@PathVariable Long id) {
-        return catalogService.getProduct(id);
+    public ResponseEntity<ProductDto> getProduct(@PathVariable Long id, WebRequest request) {
+        // Условный запрос проверяется по одному updated_at, без загрузки и сериализации товара
+        if (isConditional(request)) {
+            LocalDateTime updatedAt = catalogService.getProductUpdatedAt(id);
+            if (request.checkNotModified(etag(id, updatedAt), epochMilli(updatedAt))) {
+                return notModified();
+            }
+        }
+        ProductDto dto = catalogService.getProduct(id);
+        return withValidators(etag(id, dto.getUpdatedAt()), dto.getUpdatedAt()).body(dto);
     }
 
     @PutMapping("/products/{id}")
@@ -82,4 +159,55 @@ public class CatalogController {
     public ProductDto updateStock(@PathVariable Long id, @RequestParam Integer delta) {
         return catalogService.updateStock(id, delta);
     }
+
+    @PatchMapping("/products/stock")
+    public StockReservationDto reserveStock(@Valid @RequestBody StockReservationRequestDto dto) {
+        return catalogService.reserveStock(dto.getItems());
+    }
+
+    private static boolean isConditional(WebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    // Сильный ETag ресурса: id и updatedAt с точностью до микросекунд
+    private static String etag(Long id, LocalDateTime updatedAt) {
+        return updatedAt != null ? "\"" + id + "-" + epochMicro(updatedAt) + "\"" : null;
+    }
+
+    // ETag страницы списка: число строк под фильтром и последнее изменение среди них.
+    // Параметры страницы входят в URL, поэтому в значение не добавляются
+    private static String etag(ContentVersion version) {
+        long lastModified = version.lastModified() != null ? epochMicro(version.lastModified()) : 0;
+        return "\"" + version.count() + "-" + lastModified + "\"";
+    }
+
+    private static ResponseEntity.BodyBuilder withValidators(String etag, LocalDateTime lastModified) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(READ_CACHE_CONTROL);
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        if (lastModified != null) {
+            builder.lastModified(lastModified.atZone(ZoneId.systemDefault()));
+        }
+        return builder;
+    }
+
+    // 304 обновляет заголовки сохранённого ответа, поэтому несёт тот же Cache-Control; ETag уже выставлен checkNotModified
+    private static <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(READ_CACHE_CONTROL).build();
+    }
+
+    private static long epochMilli(LocalDateTime value) {
+        return value != null ? value.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+
+    private static long epochMicro(LocalDateTime value) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, value.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @ExceptionHandler(StockReservationException.class)
+    public ResponseEntity<StockReservationDto> handleStockReservation(StockReservationException e) {
+        return ResponseEntity.unprocessableEntity().body(e.getReservation());
+    }
 }
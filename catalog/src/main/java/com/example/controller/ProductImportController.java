@@ -0,0 +1,29 @@
+package com.example.controller;
+
+import com.example.dto.catalog.ProductImportResultDto;
+import com.example.service.ProductImportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+// Только для администратора (SecurityConfig: POST /products/**)
+@RestController
+public class ProductImportController {
+
+    private final ProductImportService productImportService;
+
+    public ProductImportController(ProductImportService productImportService) {
+        this.productImportService = productImportService;
+    }
+
+    // Тело читается из потока запроса, а не @RequestBody: файл на сотни тысяч строк не собирается в памяти
+    @PostMapping(value = "/products/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ProductImportResultDto importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                 InputStream body) {
+        return productImportService.importProducts(body, ProductImportService.Format.of(contentType));
+    }
+}
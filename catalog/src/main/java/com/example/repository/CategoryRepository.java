@@ -4,10 +4,18 @@ import com.example.entity.Category;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface CategoryRepository extends JpaRepository<Category, Long> {
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface CategoryRepository extends SliceRepository<Category, Long> {
     Category findByName(String name);
 
     Page<Category> findAll(Specification<Category> spec, Pageable pageable);
+
+    // Версия категории для ETag/Last-Modified без загрузки сущности
+    @Query("SELECT c.updatedAt FROM Category c WHERE c.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
 }
@@ -0,0 +1,7 @@
+package com.example.repository;
+
+import java.time.LocalDateTime;
+
+// Валидатор выборки: число строк и самый поздний updatedAt (null — выборка пуста)
+public record ContentVersion(long count, LocalDateTime lastModified) {
+}
@@ -2,14 +2,80 @@ package com.example.repository;
 
 import com.example.entity.Product;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+
+public interface ProductRepository extends SliceRepository<Product, Long> {
+    String SEARCH_FILTER = "FROM products p " +
+            "WHERE (p.search_vector @@ websearch_to_tsquery('simple', :q) " +
+            "OR lower(p.name) LIKE '%' || lower(:q) || '%' " +
+            "OR lower(p.name) % lower(:q)) " +
+            "AND (CAST(:categoryId AS BIGINT) IS NULL OR p.category_id = :categoryId) " +
+            "AND (CAST(:minPrice AS NUMERIC) IS NULL OR p.price >= :minPrice) " +
+            "AND (CAST(:maxPrice AS NUMERIC) IS NULL OR p.price <= :maxPrice) " +
+            "AND (CAST(:onlyActive AS BOOLEAN) IS NULL OR p.is_active = :onlyActive) ";
+    String SEARCH_QUERY = "SELECT p.* " + SEARCH_FILTER +
+            "ORDER BY ts_rank_cd(p.search_vector, websearch_to_tsquery('simple', :q)) DESC, " +
+            "similarity(lower(p.name), lower(:q)) DESC, p.id";
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
     Product findBySku(String sku);
     List<Product> findByCategoryId(Long categoryId);
     Page<Product> findAll(Specification<Product> spec, Pageable pageable);
+
+    // Версия товара для ETag/Last-Modified без загрузки сущности
+    @Query("SELECT p.updatedAt FROM Product p WHERE p.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
+
+    // Условное обновление без read-modify-write: 0 строк — товара нет или запаса не хватает
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock + :delta, p.updatedAt = :updatedAt " +
+            "WHERE p.id = :id AND p.stock + :delta >= 0")
+    int applyStockDelta(@Param("id") Long id,
+                        @Param("delta") int delta,
+                        @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Полнотекстовый поиск (PostgreSQL): GIN по search_vector и триграммный индекс по lower(name);
+    // порядок — по рангу совпадения, затем по похожести названия. Сортировка из Pageable не применяется
+    @Query(value = SEARCH_QUERY, countQuery = "SELECT count(*) " + SEARCH_FILTER, nativeQuery = true)
+    Page<Product> searchProducts(@Param("q") String q,
+                                 @Param("categoryId") Long categoryId,
+                                 @Param("minPrice") BigDecimal minPrice,
+                                 @Param("maxPrice") BigDecimal maxPrice,
+                                 @Param("onlyActive") Boolean onlyActive,
+                                 Pageable pageable);
+
+    // То же без count(*) — для withTotal=false
+    @Query(value = SEARCH_QUERY, nativeQuery = true)
+    Slice<Product> searchProductsSlice(@Param("q") String q,
+                                       @Param("categoryId") Long categoryId,
+                                       @Param("minPrice") BigDecimal minPrice,
+                                       @Param("maxPrice") BigDecimal maxPrice,
+                                       @Param("onlyActive") Boolean onlyActive,
+                                       Pageable pageable);
+
+    // Keyset-пагинация по (name, id): страница N стоит столько же, сколько первая.
+    // В SQL попадают только заданные фильтры, без заглушек (:x IS NULL OR ...), поэтому у каждого набора свой план:
+    // первая страница читает индекс (name, id) или (category_id, name, id) с начала, следующая — поиском от курсора.
+    // (name, id) > (:afterName, :afterId) записано так, как умеет Criteria API: name >= :afterName — условие
+    // поиска по индексу, второе условие отсекает уже отданные строки с тем же name. Читается limit+1 строк
+    default Slice<Product> findPageAfter(Specification<Product> spec, String afterName, Long afterId, int limit) {
+        Specification<Product> page = spec;
+        if (afterName != null) {
+            page = page.and((root, query, cb) -> cb.and(
+                    cb.greaterThanOrEqualTo(root.get("name"), afterName),
+                    cb.or(cb.greaterThan(root.get("name"), afterName), cb.greaterThan(root.get("id"), afterId))));
+        }
+        return findSlice(page, PageRequest.of(0, limit, Sort.by("name", "id")));
+    }
 }
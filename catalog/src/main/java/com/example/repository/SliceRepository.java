@@ -0,0 +1,16 @@
+package com.example.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+@NoRepositoryBean
+public interface SliceRepository<T, ID> extends JpaRepository<T, ID> {
+    // Как findAll(spec, pageable), но без count(*): читает size+1 строк, чтобы узнать hasNext
+    Slice<T> findSlice(Specification<T> spec, Pageable pageable);
+
+    // count(*) и max(updatedAt) по спецификации одним агрегатом, без загрузки сущностей
+    ContentVersion findVersion(Specification<T> spec);
+}
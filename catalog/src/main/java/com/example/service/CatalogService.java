@@ -1,51 +1,95 @@
 package com.example.service;
 
 import com.example.dto.catalog.CategoryDto;
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.catalog.ProductDto;
+import com.example.dto.catalog.StockChangeDto;
+import com.example.dto.catalog.StockChangeResultDto;
+import com.example.dto.catalog.StockReservationDto;
 import com.example.entity.Category;
 import com.example.entity.Product;
 import com.example.exception.NotFoundException;
+import com.example.exception.StockReservationException;
 import com.example.exception.ValidationException;
 import com.example.mapper.CategoryMapper;
 import com.example.mapper.ProductMapper;
 import com.example.repository.CategoryRepository;
+import com.example.repository.ContentVersion;
 import com.example.repository.ProductRepository;
+import com.example.util.CursorCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class CatalogService {
+    public static final int MAX_SCROLL_SIZE = 100;
+
     private final CategoryRepository categoryRepository;
     private final ProductRepository productRepository;
     private final CategoryMapper categoryMapper;
     private final ProductMapper productMapper;
+    private final boolean fullTextSearch;
 
     public CatalogService(CategoryRepository categoryRepository, ProductRepository productRepository,
-                          CategoryMapper categoryMapper, ProductMapper productMapper) {
+                          CategoryMapper categoryMapper, ProductMapper productMapper,
+                          @Value("${catalog.search.full-text:false}") boolean fullTextSearch) {
         this.categoryRepository = categoryRepository;
         this.productRepository = productRepository;
         this.categoryMapper = categoryMapper;
         this.productMapper = productMapper;
+        this.fullTextSearch = fullTextSearch;
+    }
+
+    @Transactional(readOnly = true)
+    public PageDto<CategoryDto> getCategories(Pageable pageable, String name, boolean withTotal) {
+        Specification<Category> spec = categorySpec(name);
+        if (!withTotal) {
+            return new PageDto<>(categoryRepository.findSlice(spec, pageable).map(categoryMapper::toDto));
+        }
+        Page<Category> page = categoryRepository.findAll(spec, pageable);
+        return new PageDto<>(page.map(categoryMapper::toDto));
     }
 
+    // Агрегатный валидатор списка категорий с тем же фильтром
     @Transactional(readOnly = true)
-    public PageDto<CategoryDto> getCategories(Pageable pageable, String name) {
+    public ContentVersion getCategoriesVersion(String name) {
+        return categoryRepository.findVersion(categorySpec(name));
+    }
+
+    // Страница с total из уже снятой версии списка: count(*) не выполняется повторно
+    @Transactional(readOnly = true)
+    public PageDto<CategoryDto> getCategories(Pageable pageable, String name, ContentVersion version) {
+        Slice<Category> slice = categoryRepository.findSlice(categorySpec(name), pageable);
+        return new PageDto<>(new PageImpl<>(slice.getContent(), pageable, version.count()).map(categoryMapper::toDto));
+    }
+
+    private Specification<Category> categorySpec(String name) {
         Specification<Category> spec = Specification.where(null);
         if (name != null) {
             spec = spec.and((root, query, cb) ->
                     cb.like(cb.lower(root.get("name")), "%" + name.toLowerCase(Locale.forLanguageTag("ru")) + "%"));
         }
-        Page<Category> page = categoryRepository.findAll(spec, pageable);
-        return new PageDto<>(page.map(categoryMapper::toDto));
+        return spec;
     }
 
     public CategoryDto createCategory(CategoryDto dto) {
@@ -63,6 +107,12 @@ public class CatalogService {
                 .orElseThrow(() -> new NotFoundException("Category with id " + id + " not found"));
     }
 
+    @Transactional(readOnly = true)
+    public LocalDateTime getCategoryUpdatedAt(Long id) {
+        return categoryRepository.findUpdatedAtById(id)
+                .orElseThrow(() -> new NotFoundException("Category with id " + id + " not found"));
+    }
+
     public CategoryDto updateCategory(Long id, CategoryDto dto) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Category with id " + id + " not found"));
@@ -86,7 +136,61 @@ public class CatalogService {
                                         String q,
                                         BigDecimal minPrice,
                                         BigDecimal maxPrice,
-                                        Boolean onlyActive) {
+                                        Boolean onlyActive,
+                                        boolean withTotal) {
+        if (fullTextSearch && q != null && !q.isBlank()) {
+            // Результаты упорядочены по релевантности, поэтому сортировка запроса игнорируется
+            Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+            if (!withTotal) {
+                return new PageDto<>(productRepository.searchProductsSlice(
+                        q.trim(), categoryId, minPrice, maxPrice, onlyActive, unsorted).map(productMapper::toDto));
+            }
+            Page<Product> page = productRepository.searchProducts(q.trim(), categoryId, minPrice, maxPrice, onlyActive,
+                    unsorted);
+            return new PageDto<>(page.map(productMapper::toDto));
+        }
+        Specification<Product> spec = productSpec(categoryId, q, minPrice, maxPrice, onlyActive);
+        if (!withTotal) {
+            return new PageDto<>(productRepository.findSlice(spec, pageable).map(productMapper::toDto));
+        }
+        Page<Product> page = productRepository.findAll(spec, pageable);
+        return new PageDto<>(page.map(productMapper::toDto));
+    }
+
+    // Полнотекстовый поиск идёт мимо спецификаций, агрегатной версии у его выдачи нет
+    public boolean isFullTextQuery(String q) {
+        return fullTextSearch && q != null && !q.isBlank();
+    }
+
+    // Агрегатный валидатор списка товаров (не для полнотекстового q, см. isFullTextQuery)
+    @Transactional(readOnly = true)
+    public ContentVersion getProductsVersion(Long categoryId,
+                                             String q,
+                                             BigDecimal minPrice,
+                                             BigDecimal maxPrice,
+                                             Boolean onlyActive) {
+        return productRepository.findVersion(productSpec(categoryId, q, minPrice, maxPrice, onlyActive));
+    }
+
+    // Страница с total из уже снятой версии списка: count(*) не выполняется повторно
+    @Transactional(readOnly = true)
+    public PageDto<ProductDto> getProducts(Pageable pageable,
+                                           Long categoryId,
+                                           String q,
+                                           BigDecimal minPrice,
+                                           BigDecimal maxPrice,
+                                           Boolean onlyActive,
+                                           ContentVersion version) {
+        Slice<Product> slice = productRepository.findSlice(
+                productSpec(categoryId, q, minPrice, maxPrice, onlyActive), pageable);
+        return new PageDto<>(new PageImpl<>(slice.getContent(), pageable, version.count()).map(productMapper::toDto));
+    }
+
+    private Specification<Product> productSpec(Long categoryId,
+                                               String q,
+                                               BigDecimal minPrice,
+                                               BigDecimal maxPrice,
+                                               Boolean onlyActive) {
         Specification<Product> spec = Specification.where(null);
         if (categoryId != null) spec = spec.and((root, query, cb) ->
                 cb.equal(root.get("category").get("id"), categoryId));
@@ -98,8 +202,33 @@ public class CatalogService {
                 cb.le(root.get("price"), maxPrice));
         if (onlyActive != null) spec = spec.and((root, query, cb) ->
                 cb.equal(root.get("isActive"), onlyActive));
-        Page<Product> page = productRepository.findAll(spec, pageable);
-        return new PageDto<>(page.map(productMapper::toDto));
+        return spec;
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageDto<ProductDto> scrollProducts(String after,
+                                                    int size,
+                                                    Long categoryId,
+                                                    String q,
+                                                    BigDecimal minPrice,
+                                                    BigDecimal maxPrice,
+                                                    Boolean onlyActive) {
+        if (size < 1) {
+            throw new ValidationException("Size must be positive");
+        }
+        int limit = Math.min(size, MAX_SCROLL_SIZE);
+        CursorCodec.Cursor cursor = after != null ? CursorCodec.decode(after) : null;
+        // Лишняя строка сверх limit говорит о наличии следующей страницы без count(*)
+        Slice<Product> slice = productRepository.findPageAfter(productSpec(categoryId, q, minPrice, maxPrice, onlyActive),
+                cursor != null ? cursor.key() : null, cursor != null ? cursor.id() : null, limit);
+        List<Product> content = slice.getContent();
+        boolean hasNext = slice.hasNext();
+        String nextCursor = null;
+        if (hasNext) {
+            Product last = content.get(content.size() - 1);
+            nextCursor = CursorCodec.encode(last.getName(), last.getId());
+        }
+        return new CursorPageDto<>(content.stream().map(productMapper::toDto).toList(), limit, hasNext, nextCursor);
     }
 
     public ProductDto createProduct(ProductDto dto) {
@@ -118,6 +247,24 @@ public class CatalogService {
                 .orElseThrow(() -> new NotFoundException("Product with id " + id + " not found"));
     }
 
+    @Transactional(readOnly = true)
+    public LocalDateTime getProductUpdatedAt(Long id) {
+        return productRepository.findUpdatedAtById(id)
+                .orElseThrow(() -> new NotFoundException("Product with id " + id + " not found"));
+    }
+
+    @Transactional(readOnly = true)
+    public List<ProductDto> getProductsByIds(Collection<Long> ids) {
+        Set<Long> uniqueIds = Set.copyOf(ids);
+        List<Product> products = productRepository.findAllById(uniqueIds);
+        if (products.size() != uniqueIds.size()) {
+            Set<Long> foundIds = products.stream().map(Product::getId).collect(Collectors.toSet());
+            List<Long> missingIds = uniqueIds.stream().filter(id -> !foundIds.contains(id)).sorted().toList();
+            throw new NotFoundException("Products with ids " + missingIds + " not found");
+        }
+        return products.stream().map(productMapper::toDto).toList();
+    }
+
     public ProductDto updateProduct(Long id, ProductDto dto) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Product with id " + id + " not found"));
@@ -149,14 +296,50 @@ public class CatalogService {
         productRepository.deleteById(id);
     }
 
+    // Тот же условный UPDATE, что и в reserveStock: параллельные изменения не теряются и не уводят запас в минус
     public ProductDto updateStock(Long id, Integer delta) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException("Product with id " + id + " not found"));
-        product.setStock(product.getStock() + delta);
-        if (product.getStock() < 0) {
+        if (productRepository.applyStockDelta(id, delta, LocalDateTime.now()) == 0) {
+            if (!productRepository.existsById(id)) {
+                throw new NotFoundException("Product with id " + id + " not found");
+            }
             throw new ValidationException("Stock cannot be negative");
         }
-        product.setUpdatedAt(LocalDateTime.now());
-        return productMapper.toDto(productRepository.save(product));
+        // applyStockDelta очищает контекст, поэтому товар читается уже с новым запасом
+        return productMapper.toDto(productRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Product with id " + id + " not found")));
+    }
+
+    public StockReservationDto reserveStock(List<StockChangeDto> changes) {
+        // Суммируем дельты по товару; порядок по id исключает взаимные блокировки параллельных резервов
+        Map<Long, Integer> deltas = new TreeMap<>();
+        for (StockChangeDto change : changes) {
+            deltas.merge(change.getProductId(), change.getDelta(), Integer::sum);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<StockChangeResultDto> results = new ArrayList<>();
+        String failure = null;
+        for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+            Long productId = entry.getKey();
+            Integer delta = entry.getValue();
+            if (failure != null) {
+                results.add(new StockChangeResultDto(productId, delta, StockChangeResultDto.SKIPPED));
+            } else if (productRepository.applyStockDelta(productId, delta, now) == 1) {
+                results.add(new StockChangeResultDto(productId, delta, StockChangeResultDto.APPLIED));
+            } else if (productRepository.existsById(productId)) {
+                failure = "Insufficient stock for product " + productId;
+                results.add(new StockChangeResultDto(productId, delta, StockChangeResultDto.INSUFFICIENT_STOCK));
+            } else {
+                failure = "Product with id " + productId + " not found";
+                results.add(new StockChangeResultDto(productId, delta, StockChangeResultDto.NOT_FOUND));
+            }
+        }
+        if (failure != null) {
+            // Исключение откатывает транзакцию: уже применённые строки не сохранятся
+            results.stream()
+                    .filter(r -> StockChangeResultDto.APPLIED.equals(r.getStatus()))
+                    .forEach(r -> r.setStatus(StockChangeResultDto.ROLLED_BACK));
+            throw new StockReservationException(failure, new StockReservationDto(false, results));
+        }
+        return new StockReservationDto(true, results);
     }
 }
@@ -0,0 +1,423 @@
+package com.example.service;
+
+import com.example.dto.catalog.ProductImportErrorDto;
+import com.example.dto.catalog.ProductImportResultDto;
+import com.example.entity.Category;
+import com.example.exception.ValidationException;
+import com.example.repository.CategoryRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Массовая загрузка товаров из CSV или NDJSON. Вход читается потоком, категории разрешаются по карте
+ * из одного запроса, строки пишутся пачками INSERT ... ON CONFLICT (sku) DO UPDATE.
+ * Ошибочная строка попадает в отчёт и не прерывает загрузку остальных.
+ */
+@Service
+public class ProductImportService {
+    private static final String UPSERT_SQL =
+            "INSERT INTO products (sku, name, description, price, stock, is_active, category_id, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (sku) DO UPDATE SET name = EXCLUDED.name, price = EXCLUDED.price, " +
+            "category_id = EXCLUDED.category_id, updated_at = EXCLUDED.updated_at";
+    // Ограничения колонок products (changeset 1): проверяются до записи, чтобы не ронять пачку
+    private static final int MAX_SKU_LENGTH = 64;
+    private static final int MAX_NAME_LENGTH = 128;
+
+    public enum Format {
+        CSV(new MediaType("text", "csv")),
+        NDJSON(new MediaType("application", "x-ndjson"));
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        // Формат тела определяется по Content-Type (параметры вроде charset не учитываются)
+        public static Format of(MediaType contentType) {
+            for (Format format : values()) {
+                if (format.mediaType.equalsTypeAndSubtype(contentType)) {
+                    return format;
+                }
+            }
+            throw new ValidationException("Unsupported import content type: " + contentType);
+        }
+    }
+
+    private final CategoryRepository categoryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxErrors;
+
+    public ProductImportService(CategoryRepository categoryRepository,
+                                JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                ObjectMapper objectMapper,
+                                @Value("${catalog.import.batch-size:1000}") int batchSize,
+                                @Value("${catalog.import.max-errors:1000}") int maxErrors) {
+        this.categoryRepository = categoryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    public ProductImportResultDto importProducts(InputStream input, Format format) {
+        Categories categories = loadCategories();
+        ProductImportResultDto result = new ProductImportResultDto();
+        // Повтор SKU внутри пачки ON CONFLICT не допускает: побеждает последняя строка, как при поштучной загрузке
+        Map<String, Row> batch = new LinkedHashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        try {
+            RowReader rows = format == Format.CSV ? new CsvRowReader(reader) : new NdjsonRowReader(reader);
+            Row row;
+            while ((row = rows.next()) != null) {
+                result.setProcessed(result.getProcessed() + 1);
+                String error = row.error() != null ? row.error() : validate(row, categories);
+                if (error != null) {
+                    addError(result, row, error);
+                    continue;
+                }
+                batch.remove(row.sku());
+                batch.put(row.sku(), row);
+                if (batch.size() >= batchSize) {
+                    write(batch, categories, result);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        write(batch, categories, result);
+        return result;
+    }
+
+    // Пачка — одна транзакция и (с reWriteBatchedInserts) по многострочному INSERT на каждый набор заданных колонок;
+    // у CSV он обычно один. Если БД отвергла пачку целиком, её строки повторяются по одной,
+    // чтобы найти и отчитаться о виновных
+    private void write(Map<String, Row> batch, Categories categories, ProductImportResultDto result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Row> rows = new ArrayList<>(batch.values());
+        batch.clear();
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            Map<String, List<Object[]>> statements = new LinkedHashMap<>();
+            for (Row row : rows) {
+                statements.computeIfAbsent(upsertSql(row), sql -> new ArrayList<>()).add(toArgs(row, categories, now));
+            }
+            transactionTemplate.executeWithoutResult(tx -> statements.forEach(jdbcTemplate::batchUpdate));
+            result.setImported(result.getImported() + rows.size());
+        } catch (DataAccessException batchError) {
+            for (Row row : rows) {
+                try {
+                    Object[] args = toArgs(row, categories, now);
+                    transactionTemplate.executeWithoutResult(tx -> jdbcTemplate.update(upsertSql(row), args));
+                    result.setImported(result.getImported() + 1);
+                } catch (DataAccessException e) {
+                    addError(result, row, e.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    // Необязательные колонки, которых нет во входе, у существующего товара остаются прежними: в DO UPDATE
+    // попадают только заданные. Флаги не передаются параметрами после VALUES — иначе pgjdbc не склеит пачку
+    private static String upsertSql(Row row) {
+        StringBuilder sql = new StringBuilder(UPSERT_SQL);
+        if (row.hasDescription()) {
+            sql.append(", description = EXCLUDED.description");
+        }
+        if (row.stock() != null) {
+            sql.append(", stock = EXCLUDED.stock");
+        }
+        if (row.active() != null) {
+            sql.append(", is_active = EXCLUDED.is_active");
+        }
+        return sql.toString();
+    }
+
+    // Новый товар без stock/active получает 0 и true
+    private Object[] toArgs(Row row, Categories categories, LocalDateTime now) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        return new Object[]{row.sku(), row.name(), row.description(), new BigDecimal(row.price()),
+                row.stock() != null ? Integer.parseInt(row.stock()) : 0,
+                row.active() == null || Boolean.parseBoolean(row.active()),
+                categories.resolve(row), timestamp, timestamp};
+    }
+
+    private static String validate(Row row, Categories categories) {
+        if (isBlank(row.sku())) {
+            return "SKU cannot be empty";
+        }
+        if (row.sku().length() > MAX_SKU_LENGTH) {
+            return "SKU is longer than " + MAX_SKU_LENGTH + " characters";
+        }
+        if (isBlank(row.name())) {
+            return "Name cannot be empty";
+        }
+        if (row.name().length() > MAX_NAME_LENGTH) {
+            return "Name is longer than " + MAX_NAME_LENGTH + " characters";
+        }
+        try {
+            if (new BigDecimal(row.price()).signum() <= 0) {
+                return "Price must be positive";
+            }
+        } catch (NumberFormatException | NullPointerException e) {
+            return "Invalid price: " + row.price();
+        }
+        try {
+            if (row.stock() != null && Integer.parseInt(row.stock()) < 0) {
+                return "Stock cannot be negative";
+            }
+        } catch (NumberFormatException e) {
+            return "Invalid stock: " + row.stock();
+        }
+        // Опечатка вроде yes или 1 не должна молча снимать товар с продажи
+        if (row.active() != null && !row.active().equalsIgnoreCase("true") && !row.active().equalsIgnoreCase("false")) {
+            return "Invalid active: " + row.active();
+        }
+        if (categories.resolve(row) == null) {
+            return "Category " + (row.categoryId() != null ? "with id " + row.categoryId() : "'" + row.category() + "'")
+                    + " not found";
+        }
+        return null;
+    }
+
+    private void addError(ProductImportResultDto result, Row row, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < maxErrors) {
+            result.getErrors().add(new ProductImportErrorDto(row.line(), row.sku(), message));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+
+    // Все категории одним запросом: их единицы-сотни, а строк импорта — сотни тысяч
+    private Categories loadCategories() {
+        Map<Long, Long> byId = new HashMap<>();
+        Map<String, Long> byName = new HashMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            byId.put(category.getId(), category.getId());
+            byName.put(category.getName().toLowerCase(Locale.ROOT), category.getId());
+        }
+        return new Categories(byId, byName);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private record Categories(Map<Long, Long> byId, Map<String, Long> byName) {
+        // categoryId важнее имени category; неразрешимая ссылка — null
+        Long resolve(Row row) {
+            if (row.categoryId() != null) {
+                try {
+                    return byId.get(Long.parseLong(row.categoryId()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            return row.category() != null ? byName.get(row.category().toLowerCase(Locale.ROOT)) : null;
+        }
+    }
+
+    // stock и active null — не заданы (нет колонки/ключа или пустое значение); описание задано, если есть колонка
+    private record Row(long line, String sku, String name, boolean hasDescription, String description, String price,
+                       String stock, String active, String categoryId, String category, String error) {
+        static Row of(long line, Map<String, String> fields) {
+            return new Row(line, trim(fields.get("sku")), trim(fields.get("name")),
+                    fields.containsKey("description"), emptyToNull(fields.get("description")),
+                    trim(fields.get("price")), emptyToNull(trim(fields.get("stock"))),
+                    emptyToNull(trim(fields.get("active"))),
+                    emptyToNull(trim(fields.get("categoryId"))), emptyToNull(trim(fields.get("category"))), null);
+        }
+
+        static Row invalid(long line, String error) {
+            return new Row(line, null, null, false, null, null, null, null, null, null, error);
+        }
+
+        private static String trim(String value) {
+            return value == null ? null : value.trim();
+        }
+    }
+
+    private interface RowReader {
+        // null — вход закончился
+        Row next() throws IOException;
+    }
+
+    // Объект JSON на строку; пустые строки пропускаются
+    private class NdjsonRowReader implements RowReader {
+        private final BufferedReader reader;
+        private long line;
+
+        NdjsonRowReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                line++;
+            } while (text != null && text.isBlank());
+            if (text == null) {
+                return null;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (JsonProcessingException e) {
+                return Row.invalid(line, "Invalid JSON: " + e.getOriginalMessage());
+            }
+            if (!node.isObject()) {
+                return Row.invalid(line, "Expected a JSON object");
+            }
+            Map<String, String> fields = new HashMap<>();
+            node.fields().forEachRemaining(field ->
+                    fields.put(field.getKey(), field.getValue().isNull() ? null : field.getValue().asText()));
+            return Row.of(line, fields);
+        }
+    }
+
+    // RFC 4180 с заголовком: колонки сопоставляются по именам (sku, name, description, price, stock, active,
+    // categoryId или category); поле в кавычках может содержать запятые, кавычки и переводы строк
+    private static class CsvRowReader implements RowReader {
+        private final BufferedReader reader;
+        private final List<String> header;
+        private long line;
+        private long recordLine;
+        // Ошибка разбора последней прочитанной записи; null — запись цельная
+        private String recordError;
+
+        CsvRowReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> columns = readRecord();
+            if (columns == null) {
+                throw new ValidationException("CSV header is missing");
+            }
+            if (recordError != null) {
+                throw new ValidationException("Invalid CSV header: " + recordError);
+            }
+            this.header = columns.stream().map(String::trim).toList();
+            if (!header.contains("sku")) {
+                throw new ValidationException("CSV header must contain sku column");
+            }
+        }
+
+        @Override
+        public Row next() throws IOException {
+            List<String> values;
+            do {
+                values = readRecord();
+            } while (values != null && recordError == null && values.size() == 1 && values.get(0).isBlank());
+            if (values == null) {
+                return null;
+            }
+            if (recordError != null) {
+                return Row.invalid(recordLine, recordError);
+            }
+            if (values.size() != header.size()) {
+                return Row.invalid(recordLine, "Expected " + header.size() + " columns, got " + values.size());
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                fields.put(header.get(i), values.get(i));
+            }
+            return Row.of(recordLine, fields);
+        }
+
+        // Номер строки записи — номер её первой физической строки. Кавычки открывают поле только в его начале:
+        // в значении без кавычек (Monitor 27") это обычный символ, иначе поле поглотило бы следующие строки
+        private List<String> readRecord() throws IOException {
+            String text = reader.readLine();
+            if (text == null) {
+                return null;
+            }
+            recordLine = ++line;
+            recordError = null;
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            // Поле уже было в кавычках: следующая кавычка в нём — символ, а не новое открытие
+            boolean closed = false;
+            int i = 0;
+            while (true) {
+                if (i == text.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    String next = reader.readLine();
+                    if (next == null) {
+                        recordError = "Unterminated quoted field";
+                        break;
+                    }
+                    line++;
+                    value.append('\n');
+                    text = next;
+                    i = 0;
+                    continue;
+                }
+                char c = text.charAt(i++);
+                if (quoted) {
+                    if (c == '"' && i < text.length() && text.charAt(i) == '"') {
+                        value.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                        closed = true;
+                    } else {
+                        value.append(c);
+                    }
+                } else if (c == '"' && value.isEmpty() && !closed) {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                    closed = false;
+                } else {
+                    value.append(c);
+                }
+            }
+            values.add(value.toString());
+            return values;
+        }
+    }
+}
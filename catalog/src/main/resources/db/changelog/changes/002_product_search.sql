@@ -0,0 +1,22 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:4
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- rollback DROP EXTENSION IF EXISTS pg_trgm;
+
+-- changeset konstantin:5
+ALTER TABLE products ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', coalesce(name, '')), 'A') ||
+    setweight(to_tsvector('simple', coalesce(sku, '')), 'A') ||
+    setweight(to_tsvector('simple', coalesce(description, '')), 'B')
+) STORED;
+
+-- rollback ALTER TABLE products DROP COLUMN search_vector;
+
+-- changeset konstantin:6
+CREATE INDEX idx_products_search ON products USING GIN(search_vector);
+CREATE INDEX idx_products_name_trgm ON products USING GIN(lower(name) gin_trgm_ops);
+
+-- rollback DROP INDEX idx_products_search;
+-- rollback DROP INDEX idx_products_name_trgm;
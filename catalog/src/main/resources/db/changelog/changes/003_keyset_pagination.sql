@@ -0,0 +1,8 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:7
+CREATE INDEX idx_products_name_id ON products(name, id);
+DROP INDEX idx_products_name;
+
+-- rollback CREATE INDEX idx_products_name ON products(name);
+-- rollback DROP INDEX idx_products_name_id;
@@ -0,0 +1,9 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:8
+-- Прокрутка товаров категории: поиск от курсора по (category_id, name, id); индекс заменяет idx_products_category
+CREATE INDEX idx_products_category_name_id ON products(category_id, name, id);
+DROP INDEX idx_products_category;
+
+-- rollback CREATE INDEX idx_products_category ON products(category_id);
+-- rollback DROP INDEX idx_products_category_name_id;
@@ -1,14 +1,22 @@
 package com.example.controller;
 
 import com.example.config.SecurityConfig;
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.catalog.CategoryDto;
 import com.example.dto.catalog.ProductDto;
+import com.example.dto.catalog.StockChangeDto;
+import com.example.dto.catalog.StockChangeResultDto;
+import com.example.dto.catalog.StockReservationDto;
+import com.example.dto.catalog.StockReservationRequestDto;
 import com.example.exception.NotFoundException;
+import com.example.exception.StockReservationException;
 import com.example.exception.ValidationException;
+import com.example.repository.ContentVersion;
 import com.example.service.CatalogService;
 import com.example.util.JwtUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,15 +25,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -62,13 +77,16 @@ class CatalogControllerTest {
                 .add("role", "ROLE_ADMIN")
                 .add("uid", 2L)
                 .add("fio", "Test Admin").build();
+
+        when(catalogService.getCategoriesVersion(any())).thenReturn(new ContentVersion(0, null));
+        when(catalogService.getProductsVersion(any(), any(), any(), any(), any())).thenReturn(new ContentVersion(0, null));
     }
 
     @Test
     void getCategories_shouldReturn200() throws Exception {
         PageDto<CategoryDto> pageDto = new PageDto<>();
         pageDto.setContent(List.of(new CategoryDto()));
-        when(catalogService.getCategories(any(), eq(null))).thenReturn(pageDto);
+        when(catalogService.getCategories(any(), eq(null), any(ContentVersion.class))).thenReturn(pageDto);
         when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
 
         mockMvc.perform(get("/categories")
@@ -83,7 +101,7 @@ class CatalogControllerTest {
     void getCategories_shouldReturn200_withName() throws Exception {
         PageDto<CategoryDto> pageDto = new PageDto<>();
         pageDto.setContent(List.of(new CategoryDto()));
-        when(catalogService.getCategories(any(), eq("Test"))).thenReturn(pageDto);
+        when(catalogService.getCategories(any(), eq("Test"), any(ContentVersion.class))).thenReturn(pageDto);
         when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
 
         mockMvc.perform(get("/categories")
@@ -200,7 +218,7 @@ class CatalogControllerTest {
     void getProducts_shouldReturn200() throws Exception {
         PageDto<ProductDto> pageDto = new PageDto<>();
         pageDto.setContent(List.of(new ProductDto()));
-        when(catalogService.getProducts(any(), eq(null), eq(null), eq(null), eq(null), eq(null))).thenReturn(pageDto);
+        when(catalogService.getProducts(any(), eq(null), eq(null), eq(null), eq(null), eq(null), any(ContentVersion.class))).thenReturn(pageDto);
         when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
 
         mockMvc.perform(get("/products")
@@ -215,7 +233,7 @@ class CatalogControllerTest {
     void getProducts_shouldReturn200_withFilters() throws Exception {
         PageDto<ProductDto> pageDto = new PageDto<>();
         pageDto.setContent(List.of(new ProductDto()));
-        when(catalogService.getProducts(any(), eq(1L), eq("search"), eq(BigDecimal.valueOf(1.0)), eq(BigDecimal.valueOf(10.0)), eq(true))).thenReturn(pageDto);
+        when(catalogService.getProducts(any(), eq(1L), eq("search"), eq(BigDecimal.valueOf(1.0)), eq(BigDecimal.valueOf(10.0)), eq(true), eq(false))).thenReturn(pageDto);
         when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
 
         mockMvc.perform(get("/products")
@@ -226,11 +244,66 @@ class CatalogControllerTest {
                         .param("minPrice", "1.0")
                         .param("maxPrice", "10.0")
                         .param("onlyActive", "true")
+                        .param("withTotal", "false")
                         .header("Authorization", "Bearer test-token"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content").isArray());
     }
 
+    @Test
+    void getProducts_shouldNegotiateSmile_andKeepJsonByDefault() throws Exception {
+        List<ProductDto> products = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            ProductDto dto = new ProductDto();
+            dto.setId(i);
+            dto.setSku("SKU-" + i);
+            dto.setName("Product " + i);
+            dto.setPrice(BigDecimal.valueOf(100 + i));
+            dto.setStock(10);
+            dto.setActive(true);
+            dto.setCategoryId(1L);
+            products.add(dto);
+        }
+        PageDto<ProductDto> pageDto = new PageDto<>(new PageImpl<>(products, PageRequest.of(0, 20), 100));
+        when(catalogService.getProducts(any(), eq(null), eq(null), eq(null), eq(null), eq(null), any(ContentVersion.class))).thenReturn(pageDto);
+        when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
+
+        byte[] json = mockMvc.perform(get("/products")
+                        .header("Authorization", "Bearer test-token")
+                        .accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] smile = mockMvc.perform(get("/products")
+                        .header("Authorization", "Bearer test-token")
+                        .accept(MediaType.valueOf("application/x-jackson-smile"), MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        PageDto<?> decoded = new ObjectMapper(new SmileFactory()).findAndRegisterModules().readValue(smile, PageDto.class);
+        assertThat(decoded.getContent()).hasSize(20);
+        assertThat(decoded.getTotalElements()).isEqualTo(100);
+        assertThat(smile.length).isLessThan(json.length);
+    }
+
+    @Test
+    void scrollProducts_shouldReturn200_withCursor() throws Exception {
+        CursorPageDto<ProductDto> pageDto = new CursorPageDto<>(List.of(new ProductDto()), 10, true, "next");
+        when(catalogService.scrollProducts(eq("abc"), eq(10), eq(null), eq(null), eq(null), eq(null), eq(null)))
+                .thenReturn(pageDto);
+        when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
+
+        mockMvc.perform(get("/products/scroll")
+                        .param("after", "abc")
+                        .param("size", "10")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").isArray())
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
     @Test
     void createProduct_shouldReturn201() throws Exception {
         ProductDto dto = new ProductDto();
@@ -281,6 +354,132 @@ class CatalogControllerTest {
                 .andExpect(jsonPath("$.sku").value("SKU123"));
     }
 
+    @Test
+    void getProduct_shouldReturnETag_andAnswer304WithoutLoading() throws Exception {
+        Long id = 1L;
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123456000);
+        ProductDto dto = new ProductDto();
+        dto.setId(id);
+        dto.setUpdatedAt(updatedAt);
+        when(catalogService.getProduct(id)).thenReturn(dto);
+        when(catalogService.getProductUpdatedAt(id)).thenReturn(updatedAt);
+        when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
+
+        String etag = mockMvc.perform(get("/products/{id}", id)
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/products/{id}", id)
+                        .header("Authorization", "Bearer test-token")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+
+        verify(catalogService, times(1)).getProduct(id);
+    }
+
+    @Test
+    void getProducts_shouldAnswer304_whenListingUnchanged() throws Exception {
+        when(catalogService.getProductsVersion(eq(1L), eq(null), eq(null), eq(null), eq(null)))
+                .thenReturn(new ContentVersion(5, LocalDateTime.of(2024, 5, 1, 12, 0)));
+        when(catalogService.getProducts(any(), eq(1L), eq(null), eq(null), eq(null), eq(null), any(ContentVersion.class)))
+                .thenReturn(new PageDto<>());
+        when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
+
+        String etag = mockMvc.perform(get("/products")
+                        .param("categoryId", "1")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/products")
+                        .param("categoryId", "1")
+                        .header("Authorization", "Bearer test-token")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        // Удаление строки не меняет max(updated_at): по одной дате 304 не отдаётся
+        mockMvc.perform(get("/products")
+                        .param("categoryId", "1")
+                        .header("Authorization", "Bearer test-token")
+                        .header("If-Modified-Since", "Wed, 01 May 2030 12:00:00 GMT"))
+                .andExpect(status().isOk());
+
+        verify(catalogService, times(2)).getProducts(any(), any(), any(), any(), any(), any(), any(ContentVersion.class));
+    }
+
+    @Test
+    void catalogReads_shouldBeStorable_despiteSecurityDefaultHeaders() throws Exception {
+        ProductDto dto = new ProductDto();
+        dto.setId(1L);
+        dto.setUpdatedAt(LocalDateTime.of(2024, 5, 1, 12, 0));
+        when(catalogService.getProduct(1L)).thenReturn(dto);
+        when(catalogService.getProducts(any(), eq(null), eq(null), eq(null), eq(null), eq(null), any(ContentVersion.class)))
+                .thenReturn(new PageDto<>());
+        when(catalogService.getCategories(any(), eq(null), eq(false))).thenReturn(new PageDto<>());
+        when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
+
+        mockMvc.perform(get("/products/{id}", 1L)
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(header().doesNotExist("Pragma"));
+        String etag = mockMvc.perform(get("/products")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/products")
+                        .header("Authorization", "Bearer test-token")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Cache-Control", "no-cache"));
+        mockMvc.perform(get("/categories")
+                        .param("withTotal", "false")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"));
+    }
+
+    @Test
+    void getProducts_shouldNotComputeVersion_forSliceOrFullTextSearch() throws Exception {
+        PageDto<ProductDto> pageDto = new PageDto<>();
+        pageDto.setContent(List.of(new ProductDto()));
+        when(catalogService.isFullTextQuery("phone")).thenReturn(true);
+        when(catalogService.getProducts(any(), eq(null), eq("phone"), eq(null), eq(null), eq(null), eq(true)))
+                .thenReturn(pageDto);
+        when(catalogService.getProducts(any(), eq(null), eq(null), eq(null), eq(null), eq(null), eq(false)))
+                .thenReturn(pageDto);
+        when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
+
+        mockMvc.perform(get("/products")
+                        .param("q", "phone")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"));
+        mockMvc.perform(get("/products")
+                        .param("withTotal", "false")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"));
+
+        verify(catalogService, never()).getProductsVersion(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getProductsByIds_shouldReturn200() throws Exception {
+        ProductDto dto = new ProductDto();
+        dto.setId(1L);
+        when(catalogService.getProductsByIds(List.of(1L, 2L))).thenReturn(List.of(dto));
+        when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
+
+        mockMvc.perform(get("/products/batch")
+                        .param("ids", "1,2")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1L));
+    }
+
     @Test
     void getProduct_shouldReturn404_whenNotFound() throws Exception {
         Long id = 1L;
@@ -366,4 +565,42 @@ class CatalogControllerTest {
                 .andExpect(status().isUnprocessableEntity())
                 .andExpect(jsonPath("$.message").value("Stock cannot be negative"));
     }
+
+    @Test
+    void reserveStock_shouldReturn200_forService() throws Exception {
+        Claims serviceClaims = Jwts.claims()
+                .setSubject("order-service")
+                .add("role", "ROLE_SERVICE").build();
+        StockReservationDto reservation = new StockReservationDto(true,
+                List.of(new StockChangeResultDto(1L, -2, StockChangeResultDto.APPLIED)));
+        when(catalogService.reserveStock(any())).thenReturn(reservation);
+        when(jwtUtil.validateToken("service-token")).thenReturn(serviceClaims);
+
+        mockMvc.perform(patch("/products/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new StockReservationRequestDto(List.of(new StockChangeDto(1L, -2)))))
+                        .header("Authorization", "Bearer service-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(true))
+                .andExpect(jsonPath("$.items[0].status").value("APPLIED"));
+    }
+
+    @Test
+    void reserveStock_shouldReturn422WithPerLineResult_whenRejected() throws Exception {
+        StockReservationDto reservation = new StockReservationDto(false,
+                List.of(new StockChangeResultDto(1L, -20, StockChangeResultDto.INSUFFICIENT_STOCK)));
+        when(catalogService.reserveStock(any()))
+                .thenThrow(new StockReservationException("Insufficient stock for product 1", reservation));
+        when(jwtUtil.validateToken("test-token")).thenReturn(adminClaims);
+
+        mockMvc.perform(patch("/products/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new StockReservationRequestDto(List.of(new StockChangeDto(1L, -20)))))
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.applied").value(false))
+                .andExpect(jsonPath("$.items[0].status").value("INSUFFICIENT_STOCK"));
+    }
 }
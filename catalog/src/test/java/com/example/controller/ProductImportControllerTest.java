@@ -0,0 +1,73 @@
+package com.example.controller;
+
+import com.example.config.SecurityConfig;
+import com.example.dto.catalog.ProductImportResultDto;
+import com.example.service.ProductImportService;
+import com.example.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ProductImportController.class)
+@Import(SecurityConfig.class)
+class ProductImportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ProductImportService productImportService;
+
+    @MockBean
+    private JwtUtil jwtUtil;
+
+    @Test
+    void importProducts_shouldPassCsvStreamToService() throws Exception {
+        when(jwtUtil.validateToken("test-token")).thenReturn(claims("ROLE_ADMIN"));
+        ProductImportResultDto result = new ProductImportResultDto();
+        result.setProcessed(1);
+        result.setImported(1);
+        when(productImportService.importProducts(any(), eq(ProductImportService.Format.CSV))).thenReturn(result);
+
+        mockMvc.perform(post("/products/import")
+                        .header("Authorization", "Bearer test-token")
+                        .contentType("text/csv")
+                        .content("sku,name,price\nA-1,One,1\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1));
+    }
+
+    @Test
+    void importProducts_shouldReturn403_forUser() throws Exception {
+        when(jwtUtil.validateToken("test-token")).thenReturn(claims("ROLE_USER"));
+
+        mockMvc.perform(post("/products/import")
+                        .header("Authorization", "Bearer test-token")
+                        .contentType("application/x-ndjson")
+                        .content("{}"))
+                .andExpect(status().isForbidden());
+        verify(productImportService, never()).importProducts(any(), any());
+    }
+
+    private static Claims claims(String role) {
+        return Jwts.claims()
+                .setSubject("test")
+                .add("role", role)
+                .add("uid", 1L)
+                .add("fio", "Test").build();
+    }
+}
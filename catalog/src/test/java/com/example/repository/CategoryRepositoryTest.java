@@ -1,5 +1,6 @@
 package com.example.repository;
 
+import com.example.config.JpaConfig;
 import com.example.entity.Category;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,6 +8,9 @@ import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfigurati
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.time.LocalDateTime;
@@ -15,7 +19,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 @DataJpaTest(excludeAutoConfiguration = LiquibaseAutoConfiguration.class)
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
-@Import(com.example.ApplicationCatalog.class)
+@Import({com.example.ApplicationCatalog.class, JpaConfig.class})
 class CategoryRepositoryTest {
 
     @Autowired
@@ -52,4 +56,24 @@ class CategoryRepositoryTest {
         assertThat(page.getContent()).hasSize(1);
         assertThat(page.getContent().get(0).getName()).isEqualTo("Test");
     }
-}
\ No newline at end of file
+
+    @Test
+    void findSlice_shouldReportNextPageWithoutCount() {
+        for (String name : new String[]{"A", "B", "C"}) {
+            Category category = new Category();
+            category.setName(name);
+            category.setCreatedAt(LocalDateTime.now());
+            category.setUpdatedAt(LocalDateTime.now());
+            categoryRepository.save(category);
+        }
+
+        Sort sort = Sort.by("name");
+        Slice<Category> first = categoryRepository.findSlice(null, PageRequest.of(0, 2, sort));
+        Slice<Category> second = categoryRepository.findSlice(null, PageRequest.of(1, 2, sort));
+
+        assertThat(first.getContent()).extracting(Category::getName).containsExactly("A", "B");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting(Category::getName).containsExactly("C");
+        assertThat(second.hasNext()).isFalse();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.repository;
 
+import com.example.config.JpaConfig;
 import com.example.entity.Category;
 import com.example.entity.Product;
 import org.junit.jupiter.api.Test;
@@ -10,16 +11,18 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DataJpaTest(excludeAutoConfiguration = LiquibaseAutoConfiguration.class)
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
-@Import(com.example.ApplicationCatalog.class)
+@Import({com.example.ApplicationCatalog.class, JpaConfig.class})
 class ProductRepositoryTest {
 
     @Autowired
@@ -105,4 +108,95 @@ class ProductRepositoryTest {
         assertThat(page.getContent()).hasSize(1);
         assertThat(page.getContent().get(0).getSku()).isEqualTo("SKU123");
     }
+
+    @Test
+    void applyStockDelta_shouldUpdateOnlyWhenStockSuffices() {
+        Category category = new Category();
+        category.setName("TestCategory");
+        category.setCreatedAt(LocalDateTime.now());
+        category.setUpdatedAt(LocalDateTime.now());
+        categoryRepository.save(category);
+
+        Product product = new Product();
+        product.setSku("SKU123");
+        product.setName("Test");
+        product.setPrice(BigDecimal.TEN);
+        product.setStock(10);
+        product.setActive(true);
+        product.setCategory(category);
+        product.setCreatedAt(LocalDateTime.now());
+        product.setUpdatedAt(LocalDateTime.now());
+        product = productRepository.save(product);
+
+        int applied = productRepository.applyStockDelta(product.getId(), -4, LocalDateTime.now());
+        int rejected = productRepository.applyStockDelta(product.getId(), -7, LocalDateTime.now());
+
+        assertThat(applied).isEqualTo(1);
+        assertThat(rejected).isZero();
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(6);
+    }
+
+    @Test
+    void findPageAfter_shouldSeekPastCursor() {
+        Category category = new Category();
+        category.setName("TestCategory");
+        category.setCreatedAt(LocalDateTime.now());
+        category.setUpdatedAt(LocalDateTime.now());
+        categoryRepository.save(category);
+        for (String name : List.of("b", "a", "c", "b")) {
+            Product product = new Product();
+            product.setSku("SKU-" + name + "-" + productRepository.count());
+            product.setName(name);
+            product.setPrice(BigDecimal.TEN);
+            product.setStock(10);
+            product.setActive(true);
+            product.setCategory(category);
+            product.setCreatedAt(LocalDateTime.now());
+            product.setUpdatedAt(LocalDateTime.now());
+            productRepository.save(product);
+        }
+
+        Slice<Product> first = productRepository.findPageAfter(Specification.where(null), null, null, 2);
+        Product last = first.getContent().get(1);
+        Slice<Product> next = productRepository.findPageAfter(
+                (root, query, cb) -> cb.isTrue(root.get("isActive")), last.getName(), last.getId(), 10);
+
+        assertThat(first.getContent()).extracting(Product::getName).containsExactly("a", "b");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(next.getContent()).extracting(Product::getName).containsExactly("b", "c");
+        assertThat(next.getContent().get(0).getId()).isGreaterThan(last.getId());
+        assertThat(next.hasNext()).isFalse();
+    }
+
+    @Test
+    void findVersion_shouldAggregateCountAndLastModified() {
+        Category category = new Category();
+        category.setName("TestCategory");
+        category.setCreatedAt(LocalDateTime.now());
+        category.setUpdatedAt(LocalDateTime.now());
+        categoryRepository.save(category);
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 5, 1, 12, 0);
+        for (int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setSku("SKU-" + i);
+            product.setName("Product " + i);
+            product.setPrice(BigDecimal.valueOf(10 + i));
+            product.setStock(10);
+            product.setActive(true);
+            product.setCategory(category);
+            product.setCreatedAt(updatedAt);
+            product.setUpdatedAt(updatedAt.plusMinutes(i));
+            productRepository.save(product);
+        }
+        Specification<Product> cheap = (root, query, cb) -> cb.le(root.get("price"), BigDecimal.valueOf(11));
+
+        ContentVersion all = productRepository.findVersion(Specification.where(null));
+        ContentVersion filtered = productRepository.findVersion(cheap);
+        Long id = productRepository.findBySku("SKU-1").getId();
+
+        assertThat(all).isEqualTo(new ContentVersion(3, updatedAt.plusMinutes(2)));
+        assertThat(filtered).isEqualTo(new ContentVersion(2, updatedAt.plusMinutes(1)));
+        assertThat(productRepository.findUpdatedAtById(id)).contains(updatedAt.plusMinutes(1));
+        assertThat(productRepository.findUpdatedAtById(-1L)).isEmpty();
+    }
 }
@@ -1,16 +1,23 @@
 package com.example.service;
 
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.catalog.CategoryDto;
 import com.example.dto.catalog.ProductDto;
+import com.example.dto.catalog.StockChangeDto;
+import com.example.dto.catalog.StockChangeResultDto;
+import com.example.dto.catalog.StockReservationDto;
 import com.example.entity.Category;
 import com.example.entity.Product;
 import com.example.exception.NotFoundException;
+import com.example.exception.StockReservationException;
 import com.example.exception.ValidationException;
 import com.example.mapper.CategoryMapper;
 import com.example.mapper.ProductMapper;
 import com.example.repository.CategoryRepository;
+import com.example.repository.ContentVersion;
 import com.example.repository.ProductRepository;
+import com.example.util.CursorCodec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,17 +27,22 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -53,7 +65,7 @@ public class CatalogServiceTest {
 
     @BeforeEach
     void setUp() {
-        catalogService = new CatalogService(categoryRepository, productRepository, categoryMapper, productMapper);
+        catalogService = new CatalogService(categoryRepository, productRepository, categoryMapper, productMapper, false);
     }
 
     // Метод 1: getCategories без имени — проверяет пагинацию без фильтра.
@@ -66,7 +78,7 @@ public class CatalogServiceTest {
         CategoryDto dto = new CategoryDto();
         when(categoryMapper.toDto(any(Category.class))).thenReturn(dto);
 
-        PageDto<CategoryDto> result = catalogService.getCategories(pageable, null);
+        PageDto<CategoryDto> result = catalogService.getCategories(pageable, null, true);
 
         assertThat(result.getContent()).hasSize(1);
         verify(categoryRepository).findAll(any(Specification.class), eq(pageable));
@@ -80,7 +92,7 @@ public class CatalogServiceTest {
         Page<Category> page = new PageImpl<>(List.of());
         when(categoryRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(page);
 
-        catalogService.getCategories(pageable, "Test");
+        catalogService.getCategories(pageable, "Test", true);
 
         verify(categoryRepository).findAll(any(Specification.class), eq(pageable));
     }
@@ -192,7 +204,7 @@ public class CatalogServiceTest {
         ProductDto dto = new ProductDto();
         when(productMapper.toDto(any(Product.class))).thenReturn(dto);
 
-        PageDto<ProductDto> result = catalogService.getProducts(pageable, null, null, null, null, null);
+        PageDto<ProductDto> result = catalogService.getProducts(pageable, null, null, null, null, null, true);
 
         assertThat(result.getContent()).hasSize(1);
         verify(productRepository).findAll(any(Specification.class), eq(pageable));
@@ -206,11 +218,89 @@ public class CatalogServiceTest {
         Page<Product> page = new PageImpl<>(List.of());
         when(productRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(page);
 
-        catalogService.getProducts(pageable, 1L, "search", BigDecimal.ONE, BigDecimal.TEN, true);
+        catalogService.getProducts(pageable, 1L, "search", BigDecimal.ONE, BigDecimal.TEN, true, true);
 
         verify(productRepository).findAll(any(Specification.class), eq(pageable));
     }
 
+    // getProducts с версией списка: total берётся из агрегата версии, count(*) не выполняется.
+    @Test
+    void getProducts_shouldTakeTotalFromVersion() {
+        Pageable pageable = PageRequest.of(0, 1);
+        when(productRepository.findSlice(any(Specification.class), eq(pageable)))
+                .thenReturn(new SliceImpl<>(List.of(new Product()), pageable, true));
+        when(productMapper.toDto(any(Product.class))).thenReturn(new ProductDto());
+
+        PageDto<ProductDto> result = catalogService.getProducts(pageable, null, null, null, null, null,
+                new ContentVersion(7, LocalDateTime.now()));
+
+        assertThat(result.getContent()).hasSize(1);
+        assertThat(result.getTotalElements()).isEqualTo(7);
+        assertThat(result.getTotalPages()).isEqualTo(7);
+        verify(productRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    // getProducts с withTotal=false: Slice без count(*), totalElements не вычисляется.
+    @Test
+    void getProducts_shouldSkipCount_whenWithTotalFalse() {
+        Pageable pageable = PageRequest.of(0, 1);
+        when(productRepository.findSlice(any(Specification.class), eq(pageable)))
+                .thenReturn(new SliceImpl<>(List.of(new Product()), pageable, true));
+        when(productMapper.toDto(any(Product.class))).thenReturn(new ProductDto());
+
+        PageDto<ProductDto> result = catalogService.getProducts(pageable, null, null, null, null, null, false);
+
+        assertThat(result.getContent()).hasSize(1);
+        assertThat(result.isHasNext()).isTrue();
+        assertThat(result.getTotalElements()).isEqualTo(-1);
+        verify(productRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    // getProducts в режиме полнотекстового поиска: ранжированный запрос вместо LIKE, сортировка сбрасывается.
+    @Test
+    void getProducts_shouldUseRankedSearch_whenFullTextEnabled() {
+        CatalogService searchService = new CatalogService(
+                categoryRepository, productRepository, categoryMapper, productMapper, true);
+        Pageable pageable = PageRequest.of(1, 10, Sort.by("name"));
+        when(productRepository.searchProducts("phone", 1L, null, null, true, PageRequest.of(1, 10)))
+                .thenReturn(new PageImpl<>(List.of(new Product())));
+        when(productMapper.toDto(any(Product.class))).thenReturn(new ProductDto());
+
+        PageDto<ProductDto> result = searchService.getProducts(pageable, 1L, " phone ", null, null, true, true);
+
+        assertThat(result.getContent()).hasSize(1);
+        verify(productRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    // scrollProducts: limit+1 строк — есть следующая страница, курсор указывает на последнюю отданную строку.
+    @Test
+    void scrollProducts_shouldReturnNextCursor_whenMoreRowsExist() {
+        Product first = new Product();
+        first.setId(1L);
+        first.setName("a");
+        Product second = new Product();
+        second.setId(2L);
+        second.setName("b");
+        when(productRepository.findPageAfter(any(Specification.class), eq("a"), eq(1L), eq(2)))
+                .thenReturn(new SliceImpl<>(List.of(first, second), PageRequest.of(0, 2), true));
+        when(productMapper.toDto(any(Product.class))).thenReturn(new ProductDto());
+
+        CursorPageDto<ProductDto> result = catalogService.scrollProducts(
+                CursorCodec.encode("a", 1L), 2, null, "Phone", null, null, null);
+
+        assertThat(result.getContent()).hasSize(2);
+        assertThat(result.isHasNext()).isTrue();
+        assertThat(CursorCodec.decode(result.getNextCursor())).isEqualTo(new CursorCodec.Cursor("b", 2L));
+    }
+
+    @Test
+    void scrollProducts_shouldThrowValidationException_forInvalidCursor() {
+        assertThatThrownBy(() -> catalogService.scrollProducts("%%%", 10, null, null, null, null, null))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Invalid cursor");
+        verify(productRepository, never()).findPageAfter(any(), any(), any(), anyInt());
+    }
+
     // Метод 11: createProduct — проверяет создание с категорией.
     @Test
     void createProduct_shouldSaveWithCategory() {
@@ -276,6 +366,34 @@ public class CatalogServiceTest {
                 .hasMessage("Product with id " + id + " not found");
     }
 
+    // getProductsByIds: все товары найдены одним запросом.
+    @Test
+    void getProductsByIds_shouldReturnDtos_whenAllFound() {
+        Product first = new Product();
+        first.setId(1L);
+        Product second = new Product();
+        second.setId(2L);
+        when(productRepository.findAllById(any())).thenReturn(List.of(first, second));
+        when(productMapper.toDto(any(Product.class))).thenReturn(new ProductDto());
+
+        List<ProductDto> result = catalogService.getProductsByIds(List.of(1L, 2L, 1L));
+
+        assertThat(result).hasSize(2);
+        verify(productRepository).findAllById(Set.of(1L, 2L));
+    }
+
+    // getProductsByIds: отсутствующие id перечисляются в сообщении.
+    @Test
+    void getProductsByIds_shouldThrowNotFound_whenSomeMissing() {
+        Product first = new Product();
+        first.setId(1L);
+        when(productRepository.findAllById(any())).thenReturn(List.of(first));
+
+        assertThatThrownBy(() -> catalogService.getProductsByIds(List.of(1L, 3L, 2L)))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Products with ids [2, 3] not found");
+    }
+
     // Метод 15: updateProduct — проверяет частичное обновление полей.
     @Test
     void updateProduct_shouldUpdateFields() {
@@ -354,26 +472,22 @@ public class CatalogServiceTest {
         verify(productRepository).deleteById(id);
     }
 
-    // Метод 19: updateStock успех.
+    // Метод 19: updateStock успех — условный UPDATE без read-modify-write.
     @Test
-    void updateStock_shouldUpdateAndSave() {
+    void updateStock_shouldApplyDeltaAtomically() {
         Long id = 1L;
         Integer delta = 5;
         Product entity = new Product();
-        entity.setStock(10);
-        LocalDateTime now = LocalDateTime.now();
-        entity.setUpdatedAt(now);
+        entity.setStock(15);
+        when(productRepository.applyStockDelta(eq(id), eq(delta), any())).thenReturn(1);
         when(productRepository.findById(id)).thenReturn(Optional.of(entity));
-        when(productRepository.save(entity)).thenReturn(entity);
         ProductDto dto = new ProductDto();
         when(productMapper.toDto(entity)).thenReturn(dto);
 
         ProductDto result = catalogService.updateStock(id, delta);
 
-        assertThat(entity.getStock()).isEqualTo(15);
-        assertThat(entity.getUpdatedAt()).isNotNull();
         assertThat(result).isEqualTo(dto);
-        verify(productRepository).save(entity);
+        verify(productRepository, never()).save(any(Product.class));
     }
 
     // Метод 20: updateStock отрицательный stock.
@@ -381,9 +495,8 @@ public class CatalogServiceTest {
     void updateStock_shouldThrowValidation_whenNegative() {
         Long id = 1L;
         Integer delta = -15;
-        Product entity = new Product();
-        entity.setStock(10);
-        when(productRepository.findById(id)).thenReturn(Optional.of(entity));
+        when(productRepository.applyStockDelta(eq(id), eq(delta), any())).thenReturn(0);
+        when(productRepository.existsById(id)).thenReturn(true);
 
         assertThatThrownBy(() -> catalogService.updateStock(id, delta))
                 .isInstanceOf(ValidationException.class)
@@ -395,10 +508,45 @@ public class CatalogServiceTest {
     void updateStock_shouldThrowNotFound_whenIdInvalid() {
         Long id = 1L;
         Integer delta = 5;
-        when(productRepository.findById(id)).thenReturn(Optional.empty());
+        when(productRepository.applyStockDelta(eq(id), eq(delta), any())).thenReturn(0);
+        when(productRepository.existsById(id)).thenReturn(false);
 
         assertThatThrownBy(() -> catalogService.updateStock(id, delta))
                 .isInstanceOf(NotFoundException.class)
                 .hasMessage("Product with id " + id + " not found");
     }
+
+    // reserveStock: дельты суммируются по товару и применяются условным UPDATE.
+    @Test
+    void reserveStock_shouldApplyAggregatedDeltas() {
+        when(productRepository.applyStockDelta(eq(1L), eq(-3), any())).thenReturn(1);
+        when(productRepository.applyStockDelta(eq(2L), eq(-1), any())).thenReturn(1);
+
+        StockReservationDto result = catalogService.reserveStock(List.of(
+                new StockChangeDto(2L, -1), new StockChangeDto(1L, -1), new StockChangeDto(1L, -2)));
+
+        assertThat(result.isApplied()).isTrue();
+        assertThat(result.getItems()).extracting(StockChangeResultDto::getProductId).containsExactly(1L, 2L);
+        assertThat(result.getItems()).extracting(StockChangeResultDto::getStatus)
+                .containsOnly(StockChangeResultDto.APPLIED);
+    }
+
+    // reserveStock: нехватка запаса — исключение с построчным результатом, остальные строки не применяются.
+    @Test
+    void reserveStock_shouldThrowWithPerLineResult_whenInsufficientStock() {
+        when(productRepository.applyStockDelta(eq(1L), eq(-1), any())).thenReturn(1);
+        when(productRepository.applyStockDelta(eq(2L), eq(-50), any())).thenReturn(0);
+        when(productRepository.existsById(2L)).thenReturn(true);
+
+        assertThatThrownBy(() -> catalogService.reserveStock(List.of(
+                new StockChangeDto(1L, -1), new StockChangeDto(2L, -50), new StockChangeDto(3L, -1))))
+                .isInstanceOf(StockReservationException.class)
+                .hasMessage("Insufficient stock for product 2")
+                .satisfies(e -> assertThat(((StockReservationException) e).getReservation().getItems())
+                        .extracting(StockChangeResultDto::getStatus)
+                        .containsExactly(StockChangeResultDto.ROLLED_BACK,
+                                StockChangeResultDto.INSUFFICIENT_STOCK,
+                                StockChangeResultDto.SKIPPED));
+        verify(productRepository, never()).applyStockDelta(eq(3L), any(Integer.class), any());
+    }
 }
@@ -0,0 +1,230 @@
+package com.example.service;
+
+import com.example.dto.catalog.ProductImportResultDto;
+import com.example.entity.Category;
+import com.example.exception.ValidationException;
+import com.example.repository.CategoryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ProductImportService service;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setId(7L);
+        category.setName("Books");
+        lenient().when(categoryRepository.findAll()).thenReturn(List.of(category));
+        service = new ProductImportService(categoryRepository, jdbcTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new ObjectMapper(), 2, 10);
+    }
+
+    @Test
+    void importProducts_shouldUpsertCsvInBatches_andReportInvalidRows() {
+        String csv = "sku,name,description,price,stock,category\n" +
+                "A-1,\"Book, first\",\"multi\nline \"\"quoted\"\"\",10.50,3,books\n" +
+                "A-2,Second,,0,1,Books\n" +
+                "A-3,Third,,5,1,Unknown\n" +
+                "A-4,Fourth,,7,2,Books\n" +
+                "A-5,Fifth,,8,0,Books\n";
+
+        ProductImportResultDto result = run(csv, ProductImportService.Format.CSV);
+
+        assertThat(result.getProcessed()).isEqualTo(5);
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting("line", "sku", "message").containsExactly(
+                tuple(4L, "A-2", "Price must be positive"),
+                tuple(5L, "A-3", "Category 'Unknown' not found"));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(sql.capture(), batches.capture());
+        assertThat(sql.getAllValues().get(0))
+                .endsWith("description = EXCLUDED.description, stock = EXCLUDED.stock")
+                .doesNotContain("is_active = EXCLUDED.is_active");
+        Object[] first = batches.getAllValues().get(0).get(0);
+        assertThat(first[0]).isEqualTo("A-1");
+        assertThat(first[1]).isEqualTo("Book, first");
+        assertThat(first[2]).isEqualTo("multi\nline \"quoted\"");
+        assertThat(first[3]).isEqualTo(new BigDecimal("10.50"));
+        assertThat(first[4]).isEqualTo(3);
+        assertThat(first[5]).isEqualTo(true);
+        assertThat(first[6]).isEqualTo(7L);
+        assertThat(first).hasSize(9);
+        assertThat(batches.getAllValues().get(1)).hasSize(1);
+    }
+
+    @Test
+    void importProducts_shouldParseNdjson_andKeepLastDuplicateSkuInBatch() {
+        String ndjson = "{\"sku\":\"B-1\",\"name\":\"Old\",\"price\":1,\"stock\":1,\"categoryId\":7}\n" +
+                "\n" +
+                "not json\n" +
+                "{\"sku\":\"B-1\",\"name\":\"New\",\"price\":2,\"stock\":5,\"categoryId\":7,\"active\":false}\n";
+
+        ProductImportResultDto result = run(ndjson, ProductImportService.Format.NDJSON);
+
+        assertThat(result.getProcessed()).isEqualTo(3);
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(result.getErrors().get(0).getLine()).isEqualTo(3);
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        assertThat(batch.getValue()).hasSize(1);
+        assertThat(batch.getValue().get(0)[1]).isEqualTo("New");
+        assertThat(batch.getValue().get(0)[5]).isEqualTo(false);
+    }
+
+    @Test
+    void importProducts_shouldKeepExistingValuesOfOmittedColumns() {
+        String csv = "sku,name,price,categoryId\nD-1,Priced,9.99,7\n";
+
+        run(csv, ProductImportService.Format.CSV);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(sql.capture(), batch.capture());
+        // После VALUES нет параметров — pgjdbc с reWriteBatchedInserts склеивает пачку в один INSERT
+        assertThat(sql.getValue().substring(sql.getValue().indexOf("ON CONFLICT")))
+                .doesNotContain("?")
+                .doesNotContain("description =")
+                .doesNotContain("stock =")
+                .doesNotContain("is_active =");
+        Object[] args = batch.getValue().get(0);
+        assertThat(args[3]).isEqualTo(new BigDecimal("9.99"));
+        // Для нового SKU — значения по умолчанию, для существующего description, stock и active не меняются
+        assertThat(args[4]).isEqualTo(0);
+        assertThat(args[5]).isEqualTo(true);
+    }
+
+    @Test
+    void importProducts_shouldGroupRowsByGivenColumns_andRejectInvalidActive() {
+        String ndjson = "{\"sku\":\"E-1\",\"name\":\"One\",\"price\":1,\"categoryId\":7,\"active\":false}\n" +
+                "{\"sku\":\"E-2\",\"name\":\"Two\",\"price\":1,\"categoryId\":7,\"active\":\"yes\"}\n" +
+                "{\"sku\":\"E-3\",\"name\":\"Three\",\"price\":1,\"categoryId\":7}\n";
+        service = new ProductImportService(categoryRepository, jdbcTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new ObjectMapper(), 10, 10);
+
+        ProductImportResultDto result = run(ndjson, ProductImportService.Format.NDJSON);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting("line", "sku", "message")
+                .containsExactly(tuple(2L, "E-2", "Invalid active: yes"));
+        // Одна пачка, но два набора заданных колонок — по батчу на каждый
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(sql.capture(), batches.capture());
+        assertThat(sql.getAllValues().get(0)).endsWith("is_active = EXCLUDED.is_active");
+        assertThat(batches.getAllValues().get(0).get(0)[5]).isEqualTo(false);
+        assertThat(sql.getAllValues().get(1)).endsWith("updated_at = EXCLUDED.updated_at");
+    }
+
+    @Test
+    void importProducts_shouldTreatBareQuoteAsLiteral_andKeepFollowingRows() {
+        String csv = "sku,name,price,categoryId\n" +
+                "M-1,Monitor 27\",100,7\n" +
+                "M-2,Cable,5,7\n" +
+                "M-3,\"Stand, \"\"adjustable\"\"\",20,7\n";
+
+        ProductImportResultDto result = run(csv, ProductImportService.Format.CSV);
+
+        assertThat(result.getProcessed()).isEqualTo(3);
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getErrors()).isEmpty();
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), batches.capture());
+        assertThat(batches.getAllValues().get(0).get(0)[1]).isEqualTo("Monitor 27\"");
+        assertThat(batches.getAllValues().get(0).get(1)[1]).isEqualTo("Cable");
+        assertThat(batches.getAllValues().get(1).get(0)[1]).isEqualTo("Stand, \"adjustable\"");
+    }
+
+    @Test
+    void importProducts_shouldReportUnterminatedQuoteAtEndOfInput() {
+        String csv = "sku,name,price,categoryId\n" +
+                "U-1,One,1,7\n" +
+                "U-2,\"Two\n" +
+                "U-3,Three,1,7\n";
+
+        ProductImportResultDto result = run(csv, ProductImportService.Format.CSV);
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting("line", "message")
+                .containsExactly(tuple(3L, "Unterminated quoted field"));
+    }
+
+    @Test
+    void importProducts_shouldRetryFailedBatchRowByRow() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataIntegrityViolationException("batch failed"));
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            if ("C-2".equals(invocation.getArgument(1))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            return 1;
+        });
+        String csv = "sku,name,price,stock,categoryId\nC-1,One,1,1,7\nC-2,Two,1,1,7\n";
+
+        ProductImportResultDto result = run(csv, ProductImportService.Format.CSV);
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getErrors().get(0).getSku()).isEqualTo("C-2");
+        assertThat(result.getErrors().get(0).getMessage()).isEqualTo("value too long");
+        verify(jdbcTemplate, times(2)).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void importProducts_shouldRejectCsvWithoutSkuColumn() {
+        assertThatThrownBy(() -> run("name,price\nOne,1\n", ProductImportService.Format.CSV))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void format_shouldResolveFromContentType() {
+        assertThat(ProductImportService.Format.of(MediaType.parseMediaType("text/csv;charset=UTF-8")))
+                .isEqualTo(ProductImportService.Format.CSV);
+        assertThatThrownBy(() -> ProductImportService.Format.of(MediaType.APPLICATION_JSON))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    private ProductImportResultDto run(String body, ProductImportService.Format format) {
+        return service.importProducts(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format);
+    }
+}
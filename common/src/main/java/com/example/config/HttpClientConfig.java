@@ -0,0 +1,128 @@
+package com.example.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.routing.RoutingSupport;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Configuration
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class HttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager(HttpClientProperties properties) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxTotal())
+                .setMaxConnPerRoute(properties.getDefaultMaxPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(properties.getConnectTimeoutMs()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(properties.getResponseTimeoutMs()))
+                        .setValidateAfterInactivity(TimeValue.ofMilliseconds(properties.getValidateAfterInactivityMs()))
+                        .setTimeToLive(TimeValue.ofMilliseconds(properties.getTimeToLiveMs()))
+                        .build())
+                .build();
+        // Отдельный размер пула для каждого сервиса-получателя
+        for (HttpClientProperties.Route route : properties.getRoutes()) {
+            connectionManager.setMaxPerRoute(toRoute(route.getUrl()), route.getMaxConnections());
+        }
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager,
+                                          HttpClientProperties properties) {
+        TimeValue maxKeepAlive = TimeValue.ofMilliseconds(properties.getKeepAliveMs());
+        DefaultConnectionKeepAliveStrategy serverKeepAlive = new DefaultConnectionKeepAliveStrategy();
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(properties.getConnectionRequestTimeoutMs()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(properties.getResponseTimeoutMs()))
+                        .build())
+                // Keep-alive сервера, но не дольше настроенного потолка
+                .setKeepAliveStrategy((response, context) ->
+                        serverKeepAlive.getKeepAliveDuration(response, context).min(maxKeepAlive))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(properties.getIdleEvictMs()))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient httpClient,
+                                     HttpClientProperties properties,
+                                     MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter) {
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        if (properties.isSmile()) {
+            // Первым в списке: Accept начинается с Smile, тела запросов тоже пишутся в Smile
+            restTemplate.getMessageConverters().removeIf(MappingJackson2SmileHttpMessageConverter.class::isInstance);
+            restTemplate.getMessageConverters().add(0, smileHttpMessageConverter);
+        }
+        return restTemplate;
+    }
+
+    // http.client.pool.* — занятые, ожидающие и свободные соединения: всего и по каждому маршруту из routes
+    @Bean
+    public MeterBinder httpClientPoolMetrics(PoolingHttpClientConnectionManager httpConnectionManager,
+                                             HttpClientProperties properties) {
+        return registry -> {
+            registerPoolGauges(registry, "all", () -> httpConnectionManager.getTotalStats());
+            for (HttpClientProperties.Route route : properties.getRoutes()) {
+                HttpRoute httpRoute = toRoute(route.getUrl());
+                registerPoolGauges(registry, httpRoute.getTargetHost().toHostString(),
+                        () -> httpConnectionManager.getStats(httpRoute));
+            }
+        };
+    }
+
+    private static void registerPoolGauges(MeterRegistry registry,
+                                           String route,
+                                           Supplier<PoolStats> stats) {
+        gauge(registry, "http.client.pool.leased", route, stats, PoolStats::getLeased);
+        gauge(registry, "http.client.pool.pending", route, stats, PoolStats::getPending);
+        gauge(registry, "http.client.pool.available", route, stats, PoolStats::getAvailable);
+        gauge(registry, "http.client.pool.max", route, stats, PoolStats::getMax);
+    }
+
+    private static void gauge(MeterRegistry registry,
+                              String name,
+                              String route,
+                              Supplier<PoolStats> stats,
+                              Function<PoolStats, Integer> value) {
+        Gauge.builder(name, stats, s -> value.apply(s.get()))
+                .tag("route", route)
+                .register(registry);
+    }
+
+    private static HttpRoute toRoute(String url) {
+        try {
+            HttpHost host = RoutingSupport.normalize(HttpHost.create(new URI(url)), DefaultSchemePortResolver.INSTANCE);
+            return new HttpRoute(host, null, "https".equalsIgnoreCase(host.getSchemeName()));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid http.client.routes url: " + url, e);
+        }
+    }
+}
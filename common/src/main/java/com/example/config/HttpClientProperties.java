@@ -0,0 +1,30 @@
+package com.example.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Настройки общего HTTP-транспорта для вызовов между сервисами (http.client.* в application.yml)
+@Data
+@ConfigurationProperties(prefix = "http.client")
+public class HttpClientProperties {
+    private int maxTotal = 200;             // Всего соединений в пуле
+    private int defaultMaxPerRoute = 20;    // На хост, если он не указан в routes
+    private long connectTimeoutMs = 2000;
+    private long responseTimeoutMs = 10000;
+    private long connectionRequestTimeoutMs = 2000;  // Ожидание свободного соединения из пула
+    private long keepAliveMs = 30000;       // Потолок keep-alive, если сервер не прислал свой
+    private long idleEvictMs = 30000;       // Закрывать соединения, простаивающие дольше
+    private long validateAfterInactivityMs = 2000;
+    private long timeToLiveMs = 300000;
+    private boolean smile = true;           // Просить и отправлять application/x-jackson-smile вместо JSON
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Route {
+        private String url;
+        private int maxConnections;
+    }
+}
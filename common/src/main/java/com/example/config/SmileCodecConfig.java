@@ -0,0 +1,22 @@
+package com.example.config;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Бинарный Jackson Smile (application/x-jackson-smile) для вызовов между сервисами.
+ * Конвертер занимает место стандартного Smile-конвертера после JSON, поэтому браузеры, не называющие
+ * Smile в Accept, по-прежнему получают JSON, а внутренние клиенты (см. HttpClientConfig) запрашивают его явно.
+ */
+@Configuration
+public class SmileCodecConfig {
+
+    // Тот же ObjectMapper, что у JSON (модули, spring.jackson.*), только с бинарной фабрикой
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
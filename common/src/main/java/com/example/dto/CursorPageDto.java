@@ -0,0 +1,34 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+// Страница keyset-пагинации: без count(*) и offset, следующая страница запрашивается по nextCursor
+@Data
+public class CursorPageDto<T> {
+    private List<T> content;
+    private int size;
+    private int numberOfElements;
+    private boolean hasNext;
+    private String nextCursor;
+
+    public CursorPageDto() {
+    }
+
+    @JsonCreator
+    public CursorPageDto(
+            @JsonProperty("content") List<T> content,
+            @JsonProperty("size") int size,
+            @JsonProperty("hasNext") boolean hasNext,
+            @JsonProperty("nextCursor") String nextCursor
+    ) {
+        this.content = content;
+        this.size = size;
+        this.numberOfElements = content == null ? 0 : content.size();
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+}
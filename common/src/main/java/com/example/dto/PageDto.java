@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 
@@ -19,11 +20,19 @@ public class PageDto<T> {
     private boolean first;
     private int numberOfElements;
     private boolean empty;
+    private boolean hasNext;
 
     public PageDto() {
     }
 
     public PageDto(Page<T> page) {
+        this((Slice<T>) page);
+        this.totalPages = page.getTotalPages();
+        this.totalElements = page.getTotalElements();
+    }
+
+    // Режим withTotal=false: count(*) не выполнялся, totalElements и totalPages равны -1
+    public PageDto(Slice<T> page) {
         this.content = page.getContent();
         this.pageable = new PageableDto(
                 page.getPageable().isUnpaged() ? 0 : page.getPageable().getPageNumber(),
@@ -38,13 +47,14 @@ public class PageDto<T> {
                 page.getPageable().isUnpaged()
         );
         this.last = page.isLast();
-        this.totalPages = page.getTotalPages();
-        this.totalElements = page.getTotalElements();
+        this.totalPages = -1;
+        this.totalElements = -1;
         this.size = page.getSize();
         this.number = page.getNumber();
         this.first = page.isFirst();
         this.numberOfElements = page.getNumberOfElements();
         this.empty = page.isEmpty();
+        this.hasNext = page.hasNext();
     }
 
     @JsonCreator
@@ -70,5 +80,6 @@ public class PageDto<T> {
         this.first = first;
         this.numberOfElements = numberOfElements;
         this.empty = empty;
+        this.hasNext = !last;
     }
 }
\ No newline at end of file
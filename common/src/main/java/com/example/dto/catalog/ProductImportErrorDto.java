@@ -0,0 +1,14 @@
+package com.example.dto.catalog;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportErrorDto {
+    private long line;
+    private String sku;
+    private String message;
+}
@@ -0,0 +1,15 @@
+package com.example.dto.catalog;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ProductImportResultDto {
+    private long processed;
+    private long imported;  // вставлено или обновлено по SKU
+    private long failed;
+    private List<ProductImportErrorDto> errors = new ArrayList<>();
+    private boolean errorsTruncated;  // ошибок больше catalog.import.max-errors, в errors только первые
+}
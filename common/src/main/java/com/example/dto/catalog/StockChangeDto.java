@@ -0,0 +1,21 @@
+package com.example.dto.catalog;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class StockChangeDto {
+    @NotNull(message = "Product ID cannot be null")
+    private Long productId;
+
+    @NotNull(message = "Delta cannot be null")
+    private Integer delta;
+
+    public StockChangeDto() {
+    }
+
+    public StockChangeDto(Long productId, Integer delta) {
+        this.productId = productId;
+        this.delta = delta;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.dto.catalog;
+
+import lombok.Data;
+
+@Data
+public class StockChangeResultDto {
+    public static final String APPLIED = "APPLIED";
+    public static final String ROLLED_BACK = "ROLLED_BACK";
+    public static final String SKIPPED = "SKIPPED";
+    public static final String INSUFFICIENT_STOCK = "INSUFFICIENT_STOCK";
+    public static final String NOT_FOUND = "NOT_FOUND";
+
+    private Long productId;
+    private Integer delta;
+    private String status;
+
+    public StockChangeResultDto() {
+    }
+
+    public StockChangeResultDto(Long productId, Integer delta, String status) {
+        this.productId = productId;
+        this.delta = delta;
+        this.status = status;
+    }
+}
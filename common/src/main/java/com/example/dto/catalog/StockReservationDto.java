@@ -0,0 +1,19 @@
+package com.example.dto.catalog;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class StockReservationDto {
+    private boolean applied;  // false — ни одна строка не применена (всё или ничего)
+    private List<StockChangeResultDto> items;
+
+    public StockReservationDto() {
+    }
+
+    public StockReservationDto(boolean applied, List<StockChangeResultDto> items) {
+        this.applied = applied;
+        this.items = items;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.dto.catalog;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class StockReservationRequestDto {
+    @NotEmpty(message = "Items cannot be empty")
+    private List<@Valid StockChangeDto> items;
+
+    public StockReservationRequestDto() {
+    }
+
+    public StockReservationRequestDto(List<StockChangeDto> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.dto.order;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Data
+public class OrderStatsDto {
+    private Long userId;
+    private long totalOrders;
+    private BigDecimal totalSpent;  // без отменённых заказов
+    private Map<String, Long> ordersByStatus;
+    private Map<String, BigDecimal> amountByStatus;
+}
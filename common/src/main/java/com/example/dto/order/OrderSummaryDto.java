@@ -1,9 +1,11 @@
 package com.example.dto.order;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 public class OrderSummaryDto {
@@ -13,4 +15,7 @@ public class OrderSummaryDto {
     private LocalDateTime createdAt;
     private Long userId;
     private String userFio;
+    // Только при include=items
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<OrderItemDto> items;
 }
@@ -0,0 +1,17 @@
+package com.example.dto.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSalesDto {
+    private Long productId;
+    private long unitsSold;
+    private BigDecimal revenue;
+    private long orderCount;
+}
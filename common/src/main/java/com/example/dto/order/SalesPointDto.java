@@ -0,0 +1,17 @@
+package com.example.dto.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesPointDto {
+    private LocalDateTime bucketStart;
+    private long unitsSold;
+    private BigDecimal revenue;
+}
@@ -2,10 +2,14 @@ package com.example.exception;
 
 import com.example.dto.ErrorResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolationException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.validation.ObjectError;
@@ -20,7 +24,10 @@ import java.util.stream.Collectors;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
 
     @ExceptionHandler(JwtValidationException.class)
     public ResponseEntity<ErrorResponse> handleJwtValidationException(JwtValidationException e,
@@ -59,7 +66,7 @@ public class GlobalExceptionHandler {
                                                                HttpServletRequest request) {
         String code;
         HttpStatus status;
-        String message = extractMessage(e.getResponseBodyAsString(), e.getMessage());
+        String message = extractMessage(e, e.getMessage());
         status = switch (e.getStatusCode().value()) {
             case 404 -> {
                 code = "NOT_FOUND";
@@ -81,6 +88,10 @@ public class GlobalExceptionHandler {
                 code = "VALIDATION_ERROR";
                 yield HttpStatus.BAD_REQUEST;
             }
+            case 409 -> {
+                code = "CONFLICT";
+                yield HttpStatus.CONFLICT;
+            }
             default -> {
                 code = "PROXY_ERROR";
                 yield HttpStatus.INTERNAL_SERVER_ERROR;
@@ -103,6 +114,18 @@ public class GlobalExceptionHandler {
                 HttpStatus.NOT_FOUND), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleServiceUnavailable(ServiceUnavailableException e,
+                                                                  HttpServletRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new ErrorResponse(
+                        "SERVICE_UNAVAILABLE",
+                        e.getMessage(),
+                        request.getRequestURI(),
+                        HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
     @ExceptionHandler(ValidationException.class)
     public ResponseEntity<ErrorResponse> handleValidationException(ValidationException e,
                                                                    HttpServletRequest request) {
@@ -132,6 +155,17 @@ public class GlobalExceptionHandler {
                 HttpStatus.BAD_REQUEST), HttpStatus.BAD_REQUEST);
     }
 
+    // Запись по устаревшей версии сущности (@Version): клиент может перечитать ресурс и повторить
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailure(OptimisticLockingFailureException e,
+                                                                        HttpServletRequest request) {
+        return new ResponseEntity<>(new ErrorResponse(
+                "CONFLICT",
+                "Resource was modified concurrently, retry the request",
+                request.getRequestURI(),
+                HttpStatus.CONFLICT), HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(AccessDeniedException.class)
     public ResponseEntity<ErrorResponse> handleAccessDeniedException(AccessDeniedException e,
                                                                      HttpServletRequest request) {
@@ -142,9 +176,12 @@ public class GlobalExceptionHandler {
                 HttpStatus.FORBIDDEN), HttpStatus.FORBIDDEN);
     }
 
-    private String extractMessage(String body, String fallback) {
+    private String extractMessage(HttpClientErrorException e, String fallback) {
         try {
-            Map<String, Object> jsonMap = objectMapper.readValue(body, Map.class);
+            // Сервисы отвечают клиентам в Smile, если тот был запрошен (см. SmileCodecConfig)
+            MediaType contentType = e.getResponseHeaders() != null ? e.getResponseHeaders().getContentType() : null;
+            ObjectMapper mapper = SMILE.isCompatibleWith(contentType) ? smileMapper : objectMapper;
+            Map<String, Object> jsonMap = mapper.readValue(e.getResponseBodyAsByteArray(), Map.class);
             String message = (String) jsonMap.get("message");
             return message != null ? message : fallback;
         } catch (IOException ex) {
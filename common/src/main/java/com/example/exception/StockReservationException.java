@@ -0,0 +1,17 @@
+package com.example.exception;
+
+import com.example.dto.catalog.StockReservationDto;
+
+public class StockReservationException extends ValidationException {
+
+    private final StockReservationDto reservation;
+
+    public StockReservationException(String message, StockReservationDto reservation) {
+        super(message);
+        this.reservation = reservation;
+    }
+
+    public StockReservationDto getReservation() {
+        return reservation;
+    }
+}
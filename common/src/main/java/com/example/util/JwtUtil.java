@@ -1,20 +1,40 @@
 package com.example.util;
 
 import com.example.exception.JwtValidationException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component
-public class JwtUtil {
+public class JwtUtil implements MeterBinder {
+
+    public static final long DEFAULT_VERIFIED_CACHE_SIZE = 10_000;
+
+    private static final Duration SERVICE_TOKEN_TTL = Duration.ofDays(1);
+    private static final Duration SERVICE_TOKEN_REFRESH_AHEAD = Duration.ofHours(1);  // Обновляем заранее, в фоне
+    private static final Duration SERVICE_TOKEN_MIN_VALIDITY = Duration.ofMinutes(1);  // Меньше — подписываем сразу
 
     @Getter
     @Value("${jwt.expiration}")
@@ -26,19 +46,85 @@ public class JwtUtil {
     private final PrivateKey privateKey; // Приватный ключ для подписи
     private final PublicKey publicKey;  // Публичный ключ для проверки
 
+    private final JwtParser parser;     // Потокобезопасный, собирается один раз
+    // Уже проверенные токены: ключ — SHA-256 токена, запись живёт до exp токена
+    private final Cache<String, Claims> verifiedTokens;
+
+    private final AtomicReference<CachedToken> serviceToken = new AtomicReference<>();
+    private final AtomicBoolean serviceTokenRefreshing = new AtomicBoolean();
+
     // Конструктор для ключей
     public JwtUtil(PrivateKey privateKey, PublicKey publicKey) {
+        this(privateKey, publicKey, DEFAULT_VERIFIED_CACHE_SIZE);
+    }
+
+    public JwtUtil(PrivateKey privateKey, PublicKey publicKey, long verifiedCacheSize) {
         this.privateKey = privateKey;
         this.publicKey = publicKey;
+        this.parser = Jwts.parser()
+                .verifyWith(publicKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return Duration.between(Instant.now(), claims.getExpiration().toInstant()).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, claims, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
     }
 
     public String generateServiceToken() {
         Instant now = Instant.now();
+        return signServiceToken(now, now.plus(SERVICE_TOKEN_TTL));
+    }
+
+    // Кэшированный сервисный токен: RS256-подпись раз в сутки, чтение без блокировок
+    public String getServiceToken() {
+        CachedToken current = serviceToken.get();
+        Instant now = Instant.now();
+        if (current == null || !now.isBefore(current.expiresAt().minus(SERVICE_TOKEN_MIN_VALIDITY))) {
+            return refreshServiceToken().value();
+        }
+        if (!now.isBefore(current.refreshAt()) && serviceTokenRefreshing.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    refreshServiceToken();
+                } finally {
+                    serviceTokenRefreshing.set(false);
+                }
+            });
+        }
+        return current.value();
+    }
+
+    private CachedToken refreshServiceToken() {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(SERVICE_TOKEN_TTL);
+        CachedToken token = new CachedToken(
+                signServiceToken(now, expiresAt), expiresAt.minus(SERVICE_TOKEN_REFRESH_AHEAD), expiresAt);
+        serviceToken.set(token);
+        return token;
+    }
+
+    private String signServiceToken(Instant issuedAt, Instant expiresAt) {
         return Jwts.builder()
                 .subject("order-service")
                 .claim("role", "ROLE_SERVICE")
-                .issuedAt(Date.from(now))
-                .expiration(Date.from(now.plusMillis(86400000))) // 1 day
+                .issuedAt(Date.from(issuedAt))
+                .expiration(Date.from(expiresAt))
                 .signWith(privateKey, Jwts.SIG.RS256)
                 .compact();
     }
@@ -58,14 +144,26 @@ public class JwtUtil {
                 .compact();
     }
 
-    // Проверка токена
+    // Проверка токена: повторный запрос с тем же токеном — поиск в кэше вместо RSA-проверки
     public Claims validateToken(String token) {
+        if (token == null || token.isBlank()) {
+            throw new JwtValidationException("Token is empty");
+        }
+        String key = digest(token);
+        Claims cached = verifiedTokens.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        Claims claims = verifyToken(token);
+        if (claims.getExpiration() != null) {
+            verifiedTokens.put(key, claims);
+        }
+        return claims;
+    }
+
+    private Claims verifyToken(String token) {
         try {
-            return Jwts.parser()
-                    .verifyWith(publicKey)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+            return parser.parseSignedClaims(token).getPayload();
         } catch (ExpiredJwtException e) {
             throw new JwtValidationException("Token has expired", e);
         } catch (SignatureException e) {
@@ -83,4 +181,22 @@ public class JwtUtil {
     public Map<String, Object> getClaims(String token) {
         return validateToken(token);
     }
+
+    // cache.gets{cache=jwt.verified-tokens,result=hit|miss}, cache.size, cache.evictions
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, verifiedTokens, "jwt.verified-tokens");
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record CachedToken(String value, Instant refreshAt, Instant expiresAt) {
+    }
 }
@@ -1,10 +1,25 @@
 package com.example.client;
 
 import com.example.dto.catalog.ProductDto;
+import com.example.dto.catalog.StockChangeDto;
+import com.example.dto.catalog.StockChangeResultDto;
+import com.example.dto.catalog.StockReservationDto;
+import com.example.dto.catalog.StockReservationRequestDto;
 import com.example.exception.NotFoundException;
+import com.example.exception.ServiceUnavailableException;
 import com.example.exception.ValidationException;
 import com.example.util.JwtUtil;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -13,22 +28,112 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 
 @Component
-public class CatalogClient {
+public class CatalogClient implements MeterBinder {
     private final RestTemplate restTemplate;
     private final String catalogUrl;
     private final JwtUtil jwtUtil;
+    private final boolean batchEnabled;
+    private final long fanOutTimeoutMs;
+    private final ExecutorService fanOutExecutor;
+    // Имя, цена и активность товара; остаток из кэша не используется — его проверяет резерв в каталоге
+    private final Cache<Long, ProductDto> products;
+    // Только на виртуальных потоках: тот же кэш, одиночные загрузки идут через future вне блокировки сегмента
+    private final AsyncCache<Long, ProductDto> asyncProducts;
 
     public CatalogClient(RestTemplate restTemplate,
                          @Value("${catalog.url}") String catalogUrl,
-                         JwtUtil jwtUtil) {
+                         JwtUtil jwtUtil,
+                         @Value("${catalog.batch-enabled:true}") boolean batchEnabled,
+                         @Value("${catalog.fan-out.parallelism:8}") int fanOutParallelism,
+                         @Value("${catalog.fan-out.queue-capacity:256}") int fanOutQueueCapacity,
+                         @Value("${catalog.fan-out.timeout-ms:5000}") long fanOutTimeoutMs,
+                         @Value("${catalog.product-cache.max-size:10000}") long productCacheSize,
+                         @Value("${catalog.product-cache.ttl-ms:30000}") long productCacheTtlMs,
+                         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
         this.restTemplate = restTemplate;
         this.catalogUrl = catalogUrl;
         this.jwtUtil = jwtUtil;
+        this.batchEnabled = batchEnabled;
+        this.fanOutTimeoutMs = fanOutTimeoutMs;
+        // Общий пул на все запросы сервиса: parallelism — потолок одновременных вызовов каталога.
+        // Очередь ограничена: при медленном каталоге лишние вызовы отклоняются (503), а не копятся в куче.
+        // Виртуальные потоки — как и у Spring Boot, только на JDK 21+; на JDK 17 флаг игнорируется
+        boolean virtual = virtualThreads && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE);
+        this.fanOutExecutor = new ThreadPoolExecutor(
+                fanOutParallelism, fanOutParallelism, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(fanOutQueueCapacity), virtual ? virtualThreadFactory() : fanOutThreadFactory());
+        ((ThreadPoolExecutor) this.fanOutExecutor).allowCoreThreadTimeOut(true);
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(productCacheSize)
+                .expireAfterWrite(Duration.ofMillis(productCacheTtlMs))
+                .recordStats();
+        this.asyncProducts = virtual ? builder.buildAsync() : null;
+        this.products = virtual ? asyncProducts.synchronous() : builder.build();
     }
 
+    // Одновременные промахи по одному товару объединяются в один вызов каталога.
+    // Cache.get(key, loader) выполняет загрузчик под блокировкой сегмента ConcurrentHashMap (synchronized),
+    // которая закрепила бы виртуальный поток на несущем, поэтому там загрузка идёт future на пуле fan-out
     public ProductDto getProduct(Long id, String token) {
+        if (asyncProducts == null) {
+            return products.get(id, key -> fetchProduct(key, token));
+        }
+        CompletableFuture<ProductDto> product;
+        try {
+            product = asyncProducts.get(id, (key, executor) ->
+                    CompletableFuture.supplyAsync(() -> fetchProduct(key, token), fanOutExecutor));
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Catalog is overloaded, retry later", 1);
+        }
+        try {
+            return product.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Из каталога запрашиваются только товары, которых нет в кэше
+    public Map<Long, ProductDto> getProducts(Collection<Long> ids, String token) {
+        return products.getAll(ids, missing -> fetchProducts(missing, token));
+    }
+
+    public void invalidateProducts() {
+        products.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, products, "catalog.products");
+    }
+
+    private ProductDto fetchProduct(Long id, String token) {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + token);
         HttpEntity<?> entity = new HttpEntity<>(headers);
@@ -46,26 +151,152 @@ public class CatalogClient {
         }
     }
 
-    public ProductDto updateStock(Long id, Integer delta, String token) {
+    // Все товары заказа одним запросом к каталогу (или параллельными GET, если batch выключен)
+    private Map<Long, ProductDto> fetchProducts(Set<? extends Long> ids, String token) {
+        if (!batchEnabled) {
+            return fanOut(List.copyOf(ids), id -> fetchProduct(id, token));
+        }
         HttpHeaders headers = new HttpHeaders();
-        headers.set("Authorization", "Bearer " + jwtUtil.generateServiceToken());
+        headers.set("Authorization", "Bearer " + token);
         HttpEntity<?> entity = new HttpEntity<>(headers);
-        String url = UriComponentsBuilder.fromHttpUrl(catalogUrl + "/products/" + id + "/stock")
-                .queryParam("delta", delta)
+        String url = UriComponentsBuilder.fromHttpUrl(catalogUrl + "/products/batch")
+                .queryParam("ids", ids.stream().map(String::valueOf).collect(Collectors.joining(",")))
                 .toUriString();
         try {
-            return restTemplate.exchange(url, HttpMethod.PATCH, entity, ProductDto.class).getBody();
+            List<ProductDto> products = restTemplate.exchange(
+                    url, HttpMethod.GET, entity, new ParameterizedTypeReference<List<ProductDto>>() {}).getBody();
+            Map<Long, ProductDto> result = new LinkedHashMap<>();
+            if (products != null) {
+                products.forEach(product -> result.put(product.getId(), product));
+            }
+            return result;
         } catch (HttpClientErrorException e) {
             if (e.getStatusCode().value() == 404) {
                 throw new NotFoundException("Product not found");
             } else if (e.getStatusCode().value() == 422) {
-                throw new ValidationException("Invalid stock update");
+                throw new ValidationException("Product inactive or unavailable");
+            } else {
+                throw new RuntimeException("Catalog error: " + e.getMessage());
+            }
+        }
+    }
+
+    // Все изменения запаса заказа одной транзакцией в каталоге: либо применены все строки, либо ни одна
+    public StockReservationDto reserveStock(Map<Long, Integer> deltas) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Bearer " + jwtUtil.getServiceToken());
+        List<StockChangeDto> changes = deltas.entrySet().stream()
+                .map(e -> new StockChangeDto(e.getKey(), e.getValue()))
+                .toList();
+        HttpEntity<StockReservationRequestDto> entity = new HttpEntity<>(new StockReservationRequestDto(changes), headers);
+        try {
+            return restTemplate.exchange(
+                    catalogUrl + "/products/stock", HttpMethod.PATCH, entity, StockReservationDto.class).getBody();
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode().value() == 422) {
+                StockReservationDto reservation = e.getResponseBodyAs(StockReservationDto.class);
+                StockChangeResultDto failed = reservation == null || reservation.getItems() == null ? null
+                        : reservation.getItems().stream()
+                        .filter(r -> StockChangeResultDto.INSUFFICIENT_STOCK.equals(r.getStatus())
+                                || StockChangeResultDto.NOT_FOUND.equals(r.getStatus()))
+                        .findFirst()
+                        .orElse(null);
+                if (failed == null) {
+                    throw new ValidationException("Invalid stock update");
+                } else if (StockChangeResultDto.NOT_FOUND.equals(failed.getStatus())) {
+                    throw new NotFoundException("Product not found");
+                } else {
+                    throw new ValidationException("Insufficient stock for product " + failed.getProductId());
+                }
+            } else if (e.getStatusCode().value() == 404) {
+                throw new NotFoundException("Product not found");
             } else {
                 throw new RuntimeException("Stock update error: " + e.getMessage());
             }
         }
     }
 
+    /**
+     * Выполняет независимые вызовы каталога параллельно. Время ожидания ограничено самым медленным
+     * вызовом и общим дедлайном catalog.fan-out.timeout-ms; первая ошибка отменяет остальные вызовы.
+     * Если очередь пула заполнена, запрос отклоняется с 503.
+     */
+    public <K, V> Map<K, V> fanOut(Collection<K> keys, Function<K, V> call) {
+        Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+        // Задачи пула отдельно от CompletableFuture: cancel(true) у CompletableFuture поток не прерывает
+        List<Future<?>> tasks = new ArrayList<>();
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        try {
+            for (K key : keys) {
+                CompletableFuture<V> future = new CompletableFuture<>();
+                future.whenComplete((value, ex) -> {
+                    if (ex != null) {
+                        firstFailure.completeExceptionally(ex);
+                    }
+                });
+                futures.put(key, future);
+                tasks.add(fanOutExecutor.submit(() -> {
+                    try {
+                        future.complete(call.apply(key));
+                    } catch (Throwable ex) {
+                        future.completeExceptionally(ex);
+                    }
+                }));
+            }
+        } catch (RejectedExecutionException e) {
+            cancel(tasks);
+            throw new ServiceUnavailableException("Catalog is overloaded, retry later", 1);
+        }
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]));
+        try {
+            CompletableFuture.anyOf(all, firstFailure).get(fanOutTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel(tasks);
+            throw new RuntimeException("Catalog error: no response within " + fanOutTimeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(tasks);
+            throw new RuntimeException("Catalog error: interrupted");
+        } catch (ExecutionException e) {
+            cancel(tasks);
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Catalog error: " + cause.getMessage(), cause);
+        }
+        Map<K, V> result = new LinkedHashMap<>();
+        futures.forEach((key, future) -> result.put(key, future.join()));
+        return result;
+    }
+
+    // Снимает ещё не начатые задачи из очереди и прерывает выполняющиеся
+    private void cancel(List<Future<?>> tasks) {
+        tasks.forEach(task -> task.cancel(true));
+        ((ThreadPoolExecutor) fanOutExecutor).purge();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOutExecutor.shutdownNow();
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        return new VirtualThreadTaskExecutor("catalog-fan-out-").getVirtualThreadFactory();
+    }
+
+    private static ThreadFactory fanOutThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "catalog-fan-out-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
     // for tests order
     public RestTemplate getRestTemplate() {
         return restTemplate;
@@ -1,5 +1,6 @@
 package com.example.controller;
 
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.order.*;
 import com.example.service.OrderService;
@@ -24,8 +25,26 @@ public class OrderController {
     public PageDto<OrderSummaryDto> getOrders(Pageable pageable,
                                               @RequestParam(required = false) String status,
                                               @RequestParam(required = false) Long userId,
+                                              @RequestParam(defaultValue = "true") boolean withTotal,
+                                              @RequestParam(required = false) String include,
                                               Authentication authentication) {
-        return orderService.getOrders(pageable, status, userId, authentication);
+        return orderService.getOrders(pageable, status, userId, withTotal, include, authentication);
+    }
+
+    @GetMapping("/scroll")
+    public CursorPageDto<OrderSummaryDto> scrollOrders(@RequestParam(required = false) String after,
+                                                       @RequestParam(defaultValue = "20") int size,
+                                                       @RequestParam(required = false) String status,
+                                                       @RequestParam(required = false) Long userId,
+                                                       Authentication authentication) {
+        return orderService.scrollOrders(after, size, status, userId, authentication);
+    }
+
+    // userId учитывается только для администратора; остальные получают свою сводку
+    @GetMapping("/stats")
+    public OrderStatsDto getStats(@RequestParam(required = false) Long userId,
+                                  Authentication authentication) {
+        return orderService.getStats(userId, authentication);
     }
 
     @PostMapping
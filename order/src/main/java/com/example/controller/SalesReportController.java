@@ -0,0 +1,50 @@
+package com.example.controller;
+
+import com.example.dto.order.ProductSalesDto;
+import com.example.dto.order.SalesPointDto;
+import com.example.service.SalesRollupService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Только для администратора (SecurityConfig); данные — из sales_rollup с отставанием до sales-rollup.interval-ms
+@RestController
+@RequestMapping("/orders/reports")
+public class SalesReportController {
+
+    private final SalesRollupService salesRollupService;
+
+    public SalesReportController(SalesRollupService salesRollupService) {
+        this.salesRollupService = salesRollupService;
+    }
+
+    @GetMapping("/products")
+    public List<ProductSalesDto> getTopProducts(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "20") int limit) {
+        return salesRollupService.getTopProducts(from, to, status, limit);
+    }
+
+    @GetMapping("/products/{productId}")
+    public ProductSalesDto getProductSales(
+            @PathVariable Long productId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String status) {
+        return salesRollupService.getProductSales(productId, from, to, status);
+    }
+
+    @GetMapping("/series")
+    public List<SalesPointDto> getSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "hour") String granularity,
+            @RequestParam(required = false) Long productId,
+            @RequestParam(required = false) String status) {
+        return salesRollupService.getSeries(from, to, granularity, productId, status);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Час, который нужно пересчитать, хотя по updated_at этого не видно (удалённый заказ)
+@Data
+@Entity
+@Table(name = "sales_rollup_dirty")
+public class SalesRollupDirtyBucket {
+
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+}
@@ -0,0 +1,21 @@
+package com.example.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Единственная строка: до какого orders.updated_at изменения уже учтены в sales_rollup
+@Data
+@Entity
+@Table(name = "sales_rollup_state")
+public class SalesRollupState {
+    public static final int ID = 1;
+
+    @Id
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "watermark", nullable = false)
+    private LocalDateTime watermark;
+}
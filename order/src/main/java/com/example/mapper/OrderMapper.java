@@ -1,6 +1,7 @@
 package com.example.mapper;
 
 import com.example.dto.order.OrderDto;
+import com.example.dto.order.OrderItemDto;
 import com.example.dto.order.OrderSummaryDto;
 import com.example.entity.Order;
 import com.example.entity.OrderItem;
@@ -10,10 +11,15 @@ import org.mapstruct.Mapping;
 @Mapper(componentModel = "spring")
 public interface OrderMapper {
 
+    // Позиции в списке заполняет OrderService одним запросом на страницу, а не ленивая загрузка на каждый заказ
+    @Mapping(target = "items", ignore = true)
     OrderSummaryDto toSummaryDto(Order order);
 
     @Mapping(source = "items", target = "items")
     OrderDto toDto(Order order);
 
+    @Mapping(target = "items", ignore = true)
     OrderSummaryDto toItemDto(OrderItem item);
+
+    OrderItemDto toOrderItemDto(OrderItem item);
 }
@@ -0,0 +1,11 @@
+package com.example.repository;
+
+import java.time.LocalDateTime;
+
+// Час, в котором создан заказ: по одной строке на час вместо времени каждого изменённого заказа
+public record HourBucket(Integer year, Integer month, Integer day, Integer hour) {
+
+    public LocalDateTime start() {
+        return LocalDateTime.of(year, month, day, hour, 0);
+    }
+}
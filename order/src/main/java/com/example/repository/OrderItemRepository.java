@@ -3,10 +3,14 @@ package com.example.repository;
 import com.example.entity.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     List<OrderItem> findByOrderId(Long orderId);
 
+    // Позиции целой страницы заказов одним запросом: WHERE order_id IN (...)
+    List<OrderItem> findByOrderIdInOrderById(Collection<Long> orderIds);
+
     void deleteByOrderId(Long orderId);
 }
@@ -2,14 +2,87 @@ package com.example.repository;
 
 import com.example.entity.Order;
 import com.example.entity.OrderStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
+    // Заказ вместе с позициями одним запросом (LEFT JOIN order_items) — для карточки и изменений заказа
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findWithItemsById(Long id);
+
+    // Заказ под SELECT ... FOR UPDATE — для всех изменений: параллельные переходы статуса и правки позиций
+    // выполняются по очереди и считают дельты user_order_stats от актуального состояния.
+    // Без EntityGraph: PostgreSQL не блокирует строки по nullable-стороне LEFT JOIN; позиции читаются вторым запросом
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findForUpdateById(@Param("id") Long id);
+
     Page<Order> findByUserId(Long userId, Pageable pageable);
     Page<Order> findByStatus(OrderStatus status, Pageable pageable);
 
     Page<Order> findByUserIdAndStatus(Long userId, OrderStatus orderStatus, Pageable pageable);
+
+    // Slice-варианты для withTotal=false: size+1 строк вместо отдельного count(*)
+    Slice<Order> findSliceBy(Pageable pageable);
+    Slice<Order> findSliceByUserId(Long userId, Pageable pageable);
+    Slice<Order> findSliceByStatus(OrderStatus status, Pageable pageable);
+    Slice<Order> findSliceByUserIdAndStatus(Long userId, OrderStatus orderStatus, Pageable pageable);
+
+    // Часы создания заказов, изменённых в (from, to]: по ним SalesRollupService находит часы для пересчёта.
+    // Время усекается до часа в БД, поэтому строк столько же, сколько часов, а не изменённых заказов
+    @Query("SELECT DISTINCT new com.example.repository.HourBucket(" +
+            "year(o.createdAt), month(o.createdAt), day(o.createdAt), hour(o.createdAt)) " +
+            "FROM Order o WHERE o.updatedAt > :from AND o.updatedAt <= :to")
+    List<HourBucket> findHoursUpdatedBetween(@Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to);
+
+    // Keyset-пагинация от новых к старым по (created_at, id): без offset и count(*).
+    // Первая страница и продолжение — отдельные запросы на каждый набор фильтров, без заглушек (:x IS NULL OR ...):
+    // у каждого свой индекс (002, 007), и (created_at, id) < (...) идёт поиском по нему при любом плане
+    List<Order> findByOrderByCreatedAtDescIdDesc(Limit limit);
+    List<Order> findByUserIdOrderByCreatedAtDescIdDesc(Long userId, Limit limit);
+    List<Order> findByStatusOrderByCreatedAtDescIdDesc(OrderStatus status, Limit limit);
+    List<Order> findByUserIdAndStatusOrderByCreatedAtDescIdDesc(Long userId, OrderStatus status, Limit limit);
+
+    @Query("SELECT o FROM Order o WHERE (o.createdAt, o.id) < (:afterCreatedAt, :afterId) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findPageAfter(@Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                              @Param("afterId") Long afterId,
+                              Limit limit);
+
+    @Query("SELECT o FROM Order o WHERE o.userId = :userId AND (o.createdAt, o.id) < (:afterCreatedAt, :afterId) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findPageAfterByUserId(@Param("userId") Long userId,
+                                      @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                      @Param("afterId") Long afterId,
+                                      Limit limit);
+
+    @Query("SELECT o FROM Order o WHERE o.status = :status AND (o.createdAt, o.id) < (:afterCreatedAt, :afterId) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findPageAfterByStatus(@Param("status") OrderStatus status,
+                                      @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                      @Param("afterId") Long afterId,
+                                      Limit limit);
+
+    @Query("SELECT o FROM Order o WHERE o.userId = :userId AND o.status = :status " +
+            "AND (o.createdAt, o.id) < (:afterCreatedAt, :afterId) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findPageAfterByUserIdAndStatus(@Param("userId") Long userId,
+                                               @Param("status") OrderStatus status,
+                                               @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                               @Param("afterId") Long afterId,
+                                               Limit limit);
 }
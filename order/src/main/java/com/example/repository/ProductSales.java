@@ -0,0 +1,7 @@
+package com.example.repository;
+
+import java.math.BigDecimal;
+
+// Продажи товара за период из sales_rollup
+public record ProductSales(Long productId, Long units, BigDecimal revenue, Long orderCount) {
+}
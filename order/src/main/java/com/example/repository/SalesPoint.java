@@ -0,0 +1,8 @@
+package com.example.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Точка временного ряда: продажи за час (или день — после свёртки в SalesRollupService)
+public record SalesPoint(LocalDateTime bucketStart, Long units, BigDecimal revenue) {
+}
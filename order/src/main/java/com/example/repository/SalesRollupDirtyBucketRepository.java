@@ -0,0 +1,20 @@
+package com.example.repository;
+
+import com.example.entity.SalesRollupDirtyBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface SalesRollupDirtyBucketRepository extends JpaRepository<SalesRollupDirtyBucket, LocalDateTime> {
+
+    // Повторная отметка того же часа — не ошибка. DO UPDATE, а не DO NOTHING: существующая отметка блокируется
+    // до коммита удаления, и DELETE отметок в SalesRollupService.refresh ждёт его, а не пересчитывает час раньше
+    @Modifying
+    @Query(value = "INSERT INTO sales_rollup_dirty (bucket_start) VALUES (:bucketStart) " +
+            "ON CONFLICT (bucket_start) DO UPDATE SET bucket_start = EXCLUDED.bucket_start",
+            nativeQuery = true)
+    int markDirty(@Param("bucketStart") LocalDateTime bucketStart);
+}
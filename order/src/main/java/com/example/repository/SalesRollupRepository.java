@@ -0,0 +1,61 @@
+package com.example.repository;
+
+import com.example.entity.OrderStatus;
+import com.example.entity.SalesRollup;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, SalesRollup.Key> {
+
+    @Modifying
+    @Query("DELETE FROM SalesRollup r WHERE r.bucketStart = :bucketStart")
+    int deleteBucket(@Param("bucketStart") LocalDateTime bucketStart);
+
+    // Пересчёт одного часа с нуля: читает только заказы этого часа (idx_orders_created_id)
+    @Modifying
+    @Query(value = "INSERT INTO sales_rollup (bucket_start, product_id, status, units, revenue, order_count) " +
+            "SELECT :bucketStart, i.product_id, o.status, SUM(i.quantity), SUM(i.line_total), COUNT(DISTINCT o.id) " +
+            "FROM orders o JOIN order_items i ON i.order_id = o.id " +
+            "WHERE o.created_at >= :bucketStart AND o.created_at < :bucketEnd " +
+            "GROUP BY i.product_id, o.status", nativeQuery = true)
+    int rebuildBucket(@Param("bucketStart") LocalDateTime bucketStart,
+                      @Param("bucketEnd") LocalDateTime bucketEnd);
+
+    @Query("SELECT new com.example.repository.ProductSales(r.productId, SUM(r.units), SUM(r.revenue), SUM(r.orderCount)) " +
+            "FROM SalesRollup r " +
+            "WHERE r.bucketStart >= :from AND r.bucketStart < :to AND r.status IN :statuses " +
+            "GROUP BY r.productId ORDER BY SUM(r.revenue) DESC, r.productId")
+    List<ProductSales> findTopProducts(@Param("from") LocalDateTime from,
+                                       @Param("to") LocalDateTime to,
+                                       @Param("statuses") Collection<OrderStatus> statuses,
+                                       Limit limit);
+
+    @Query("SELECT new com.example.repository.ProductSales(r.productId, SUM(r.units), SUM(r.revenue), SUM(r.orderCount)) " +
+            "FROM SalesRollup r " +
+            "WHERE r.productId = :productId AND r.bucketStart >= :from AND r.bucketStart < :to " +
+            "AND r.status IN :statuses " +
+            "GROUP BY r.productId")
+    Optional<ProductSales> findProductSales(@Param("productId") Long productId,
+                                            @Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to,
+                                            @Param("statuses") Collection<OrderStatus> statuses);
+
+    // Почасовой ряд; productId = null — по всем товарам
+    @Query("SELECT new com.example.repository.SalesPoint(r.bucketStart, SUM(r.units), SUM(r.revenue)) " +
+            "FROM SalesRollup r " +
+            "WHERE r.bucketStart >= :from AND r.bucketStart < :to AND r.status IN :statuses " +
+            "AND (:productId IS NULL OR r.productId = :productId) " +
+            "GROUP BY r.bucketStart ORDER BY r.bucketStart")
+    List<SalesPoint> findHourlySeries(@Param("from") LocalDateTime from,
+                                      @Param("to") LocalDateTime to,
+                                      @Param("statuses") Collection<OrderStatus> statuses,
+                                      @Param("productId") Long productId);
+}
@@ -0,0 +1,7 @@
+package com.example.repository;
+
+import com.example.entity.SalesRollupState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SalesRollupStateRepository extends JpaRepository<SalesRollupState, Integer> {
+}
@@ -0,0 +1,28 @@
+package com.example.repository;
+
+import com.example.entity.UserOrderStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface UserOrderStatsRepository extends JpaRepository<UserOrderStats, UserOrderStats.Key> {
+
+    List<UserOrderStats> findByUserId(Long userId);
+
+    // Приращение одним upsert (PostgreSQL): строка создаётся при первом заказе в статусе, дальше —
+    // арифметика в самой БД, поэтому параллельные транзакции не теряют изменений друг друга
+    @Modifying
+    @Query(value = "INSERT INTO user_order_stats (user_id, status, order_count, total_amount) " +
+            "VALUES (:userId, :status, :countDelta, :amountDelta) " +
+            "ON CONFLICT (user_id, status) DO UPDATE SET " +
+            "order_count = user_order_stats.order_count + EXCLUDED.order_count, " +
+            "total_amount = user_order_stats.total_amount + EXCLUDED.total_amount", nativeQuery = true)
+    int apply(@Param("userId") Long userId,
+              @Param("status") String status,
+              @Param("countDelta") long countDelta,
+              @Param("amountDelta") BigDecimal amountDelta);
+}
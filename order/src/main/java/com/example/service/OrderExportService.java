@@ -0,0 +1,172 @@
+package com.example.service;
+
+import com.example.entity.OrderStatus;
+import com.example.exception.ValidationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Выгрузка заказов потоком: строки читаются курсором JDBC порциями по order.export.fetch-size
+ * и сразу пишутся в ответ, так что память не зависит от размера выгрузки.
+ */
+@Service
+public class OrderExportService {
+    private static final String COLUMNS = "id, user_id, user_fio, status, total_amount, created_at, updated_at";
+
+    public enum Format {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+        CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String format) {
+            try {
+                return valueOf(format.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Unsupported export format: " + format);
+            }
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    public OrderExportService(DataSource dataSource,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${order.export.fetch-size:1000}") int fetchSize) {
+        // Отдельный JdbcTemplate: fetch size нужен только выгрузке
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        // PostgreSQL отдаёт строки порциями только вне autocommit, поэтому курсор живёт в транзакции
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    // Фильтры проверяются сразу, до начала ответа: после первой строки код статуса уже не поменять
+    public StreamingResponseBody export(Format format, LocalDateTime from, LocalDateTime to, String status) {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM orders WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        if (status != null) {
+            try {
+                args.add(OrderStatus.valueOf(status.toUpperCase()).name());
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Unknown status: " + status);
+            }
+            sql.append(" AND status = ?");
+        }
+        // Порядок по (created_at, id) — idx_orders_created_id, без сортировки всей выборки
+        sql.append(" ORDER BY created_at, id");
+        return out -> transactionTemplate.executeWithoutResult(tx -> {
+            try {
+                if (format == Format.CSV) {
+                    writeCsv(sql.toString(), args.toArray(), out);
+                } else {
+                    writeNdjson(sql.toString(), args.toArray(), out);
+                }
+            } catch (IOException e) {
+                // Клиент оборвал загрузку: транзакция откатывается, курсор закрывается
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void writeNdjson(String sql, Object[] args, OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            // Поток ответа закрывает Spring, генератор только сбрасывает буфер
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Без разделителя корневых значений (по умолчанию пробел): строка — ровно один объект JSON
+            json.setRootValueSeparator(null);
+            jdbcTemplate.query(sql, rs -> {
+                try {
+                    json.writeStartObject();
+                    json.writeNumberField("id", rs.getLong("id"));
+                    json.writeNumberField("userId", rs.getLong("user_id"));
+                    json.writeStringField("userFio", rs.getString("user_fio"));
+                    json.writeStringField("status", rs.getString("status"));
+                    json.writeNumberField("totalAmount", rs.getBigDecimal("total_amount"));
+                    json.writeStringField("createdAt", timestamp(rs, "created_at"));
+                    json.writeStringField("updatedAt", timestamp(rs, "updated_at"));
+                    json.writeEndObject();
+                    json.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, args);
+        }
+    }
+
+    private void writeCsv(String sql, Object[] args, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,userId,userFio,status,totalAmount,createdAt,updatedAt\n");
+        jdbcTemplate.query(sql, rs -> {
+            try {
+                writer.write(rs.getLong("id") + "," + rs.getLong("user_id") + ","
+                        + csv(rs.getString("user_fio")) + "," + rs.getString("status") + ","
+                        + rs.getBigDecimal("total_amount").toPlainString() + ","
+                        + timestamp(rs, "created_at") + "," + timestamp(rs, "updated_at") + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, args);
+        writer.flush();
+    }
+
+    private static String timestamp(ResultSet rs, String column) throws SQLException {
+        return rs.getTimestamp(column).toLocalDateTime().toString();
+    }
+
+    // RFC 4180: поле с разделителем, кавычкой или переводом строки — в кавычках, кавычки удваиваются
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
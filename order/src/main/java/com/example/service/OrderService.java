@@ -1,74 +1,203 @@
 package com.example.service;
 
 import com.example.client.CatalogClient;
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.catalog.ProductDto;
 import com.example.dto.order.OrderDto;
+import com.example.dto.order.OrderItemDto;
 import com.example.dto.order.OrderItemRequestDto;
 import com.example.dto.order.OrderRequestDto;
+import com.example.dto.order.OrderStatsDto;
 import com.example.dto.order.OrderSummaryDto;
 import com.example.entity.Order;
 import com.example.entity.OrderItem;
 import com.example.entity.OrderStatus;
+import com.example.entity.UserOrderStats;
 import com.example.exception.NotFoundException;
 import com.example.exception.ValidationException;
 import com.example.mapper.OrderMapper;
 import com.example.repository.OrderItemRepository;
 import com.example.repository.OrderRepository;
+import com.example.repository.UserOrderStatsRepository;
 import com.example.security.UserPrincipal;
+import com.example.util.CursorCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class OrderService {
+    public static final int MAX_SCROLL_SIZE = 100;
+    private static final Logger log = LoggerFactory.getLogger(OrderService.class);
+
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
+    private final UserOrderStatsRepository statsRepository;
+    private final SalesRollupService salesRollupService;
     private final OrderMapper orderMapper;
     private final CatalogClient catalogClient;
 
     public OrderService(OrderRepository orderRepository,
                         OrderItemRepository orderItemRepository,
+                        UserOrderStatsRepository statsRepository,
+                        SalesRollupService salesRollupService,
                         OrderMapper orderMapper,
                         CatalogClient catalogClient) {
         this.orderRepository = orderRepository;
         this.orderItemRepository = orderItemRepository;
+        this.statsRepository = statsRepository;
+        this.salesRollupService = salesRollupService;
         this.orderMapper = orderMapper;
         this.catalogClient = catalogClient;
     }
 
+    // Сводка из user_order_stats: одно чтение по первичному ключу вместо перебора заказов
+    @Transactional(readOnly = true)
+    public OrderStatsDto getStats(Long userId, Authentication auth) {
+        UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
+        boolean isAdmin = auth.getAuthorities().stream().anyMatch(
+                a -> a.getAuthority().equals("ROLE_ADMIN"));
+        Long ownerId = isAdmin && userId != null ? userId : principal.getUserId();
+        Map<OrderStatus, Long> counts = new EnumMap<>(OrderStatus.class);
+        Map<OrderStatus, BigDecimal> amounts = new EnumMap<>(OrderStatus.class);
+        for (UserOrderStats row : statsRepository.findByUserId(ownerId)) {
+            if (row.getOrderCount() > 0) {
+                counts.put(row.getStatus(), row.getOrderCount());
+                amounts.put(row.getStatus(), row.getTotalAmount());
+            }
+        }
+        OrderStatsDto dto = new OrderStatsDto();
+        dto.setUserId(ownerId);
+        dto.setTotalOrders(counts.values().stream().mapToLong(Long::longValue).sum());
+        dto.setTotalSpent(amounts.entrySet().stream()
+                .filter(e -> e.getKey() != OrderStatus.CANCELLED)
+                .map(Map.Entry::getValue)
+                .reduce(BigDecimal.ZERO, BigDecimal::add));
+        dto.setOrdersByStatus(counts.entrySet().stream().collect(Collectors.toMap(
+                e -> e.getKey().name(), Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new)));
+        dto.setAmountByStatus(amounts.entrySet().stream().collect(Collectors.toMap(
+                e -> e.getKey().name(), Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new)));
+        return dto;
+    }
+
     @Transactional(readOnly = true)
-    public PageDto<OrderSummaryDto> getOrders(Pageable pageable, String status, Long userId, Authentication auth) {
+    public PageDto<OrderSummaryDto> getOrders(Pageable pageable, String status, Long userId, boolean withTotal,
+                                              String include, Authentication auth) {
         UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
         Long principalId = principal.getUserId();
         boolean isAdmin = auth.getAuthorities().stream().anyMatch(
                 a -> a.getAuthority().equals("ROLE_ADMIN"));
-        Page<Order> orders;
-        if (isAdmin) {
-            if (userId != null) {
-                orders = status != null
-                        ? orderRepository.findByUserIdAndStatus(userId, OrderStatus.valueOf(status.toUpperCase()), pageable)
-                        : orderRepository.findByUserId(userId, pageable);
+        Long ownerId = isAdmin ? userId : principalId;
+        OrderStatus orderStatus = status != null ? OrderStatus.valueOf(status.toUpperCase()) : null;
+        boolean includeItems = parseInclude(include);
+        if (!withTotal) {
+            Slice<Order> orders;
+            if (ownerId != null) {
+                orders = orderStatus != null
+                        ? orderRepository.findSliceByUserIdAndStatus(ownerId, orderStatus, pageable)
+                        : orderRepository.findSliceByUserId(ownerId, pageable);
             } else {
-                orders = status != null
-                        ? orderRepository.findByStatus(OrderStatus.valueOf(status.toUpperCase()), pageable)
-                        : orderRepository.findAll(pageable);
+                orders = orderStatus != null
+                        ? orderRepository.findSliceByStatus(orderStatus, pageable)
+                        : orderRepository.findSliceBy(pageable);
             }
+            return new PageDto<>(orders.map(summaryMapper(orders.getContent(), includeItems)));
+        }
+        Page<Order> orders;
+        if (ownerId != null) {
+            orders = orderStatus != null
+                    ? orderRepository.findByUserIdAndStatus(ownerId, orderStatus, pageable)
+                    : orderRepository.findByUserId(ownerId, pageable);
         } else {
-            orders = status != null
-                    ? orderRepository.findByUserIdAndStatus(principalId, OrderStatus.valueOf(status.toUpperCase()), pageable)
-                    : orderRepository.findByUserId(principalId, pageable);
+            orders = orderStatus != null
+                    ? orderRepository.findByStatus(orderStatus, pageable)
+                    : orderRepository.findAll(pageable);
+        }
+        return new PageDto<>(orders.map(summaryMapper(orders.getContent(), includeItems)));
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageDto<OrderSummaryDto> scrollOrders(String after, int size, String status, Long userId,
+                                                       Authentication auth) {
+        UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
+        boolean isAdmin = auth.getAuthorities().stream().anyMatch(
+                a -> a.getAuthority().equals("ROLE_ADMIN"));
+        if (size < 1) {
+            throw new ValidationException("Size must be positive");
+        }
+        int limit = Math.min(size, MAX_SCROLL_SIZE);
+        Long ownerId = isAdmin ? userId : principal.getUserId();
+        OrderStatus orderStatus = status != null ? OrderStatus.valueOf(status.toUpperCase()) : null;
+        LocalDateTime afterCreatedAt = null;
+        Long afterId = null;
+        if (after != null) {
+            CursorCodec.Cursor cursor = CursorCodec.decode(after);
+            try {
+                afterCreatedAt = LocalDateTime.parse(cursor.key());
+            } catch (DateTimeParseException e) {
+                throw new ValidationException("Invalid cursor");
+            }
+            afterId = cursor.id();
+        }
+        // Лишняя строка сверх limit говорит о наличии следующей страницы без count(*)
+        List<Order> orders = findOrderPage(ownerId, orderStatus, afterCreatedAt, afterId, Limit.of(limit + 1));
+        boolean hasNext = orders.size() > limit;
+        List<Order> content = hasNext ? orders.subList(0, limit) : orders;
+        String nextCursor = null;
+        if (hasNext) {
+            Order last = content.get(content.size() - 1);
+            nextCursor = CursorCodec.encode(last.getCreatedAt().toString(), last.getId());
+        }
+        return new CursorPageDto<>(content.stream().map(orderMapper::toSummaryDto).toList(), limit, hasNext, nextCursor);
+    }
+
+    // Запрос под набор фильтров: у каждого свой индекс по (..., created_at, id)
+    private List<Order> findOrderPage(Long userId, OrderStatus status, LocalDateTime afterCreatedAt, Long afterId,
+                                      Limit limit) {
+        if (afterId == null) {
+            if (userId != null && status != null) {
+                return orderRepository.findByUserIdAndStatusOrderByCreatedAtDescIdDesc(userId, status, limit);
+            }
+            if (userId != null) {
+                return orderRepository.findByUserIdOrderByCreatedAtDescIdDesc(userId, limit);
+            }
+            if (status != null) {
+                return orderRepository.findByStatusOrderByCreatedAtDescIdDesc(status, limit);
+            }
+            return orderRepository.findByOrderByCreatedAtDescIdDesc(limit);
+        }
+        if (userId != null && status != null) {
+            return orderRepository.findPageAfterByUserIdAndStatus(userId, status, afterCreatedAt, afterId, limit);
+        }
+        if (userId != null) {
+            return orderRepository.findPageAfterByUserId(userId, afterCreatedAt, afterId, limit);
+        }
+        if (status != null) {
+            return orderRepository.findPageAfterByStatus(status, afterCreatedAt, afterId, limit);
         }
-        return new PageDto<>(orders.map(orderMapper::toSummaryDto));
+        return orderRepository.findPageAfter(afterCreatedAt, afterId, limit);
     }
 
     public OrderDto createOrder(OrderRequestDto dto, Authentication auth) {
@@ -85,14 +214,13 @@ public class OrderService {
         order.setUpdatedAt(LocalDateTime.now());
         List<OrderItem> items = new ArrayList<>();
         BigDecimal totalAmount = BigDecimal.ZERO;
+        // Товары могут прийти из кэша: остаток проверяет только атомарный резерв в каталоге
+        Map<Long, ProductDto> products = loadProducts(dto.getItems(), token);
         for (OrderItemRequestDto itemDto : dto.getItems()) {
-            ProductDto product = catalogClient.getProduct(itemDto.getProductId(), token);
+            ProductDto product = getLoadedProduct(products, itemDto.getProductId());
             if (!product.isActive()) {
                 throw new ValidationException("Product " + itemDto.getProductId() + " is inactive");
             }
-            if (product.getStock() < itemDto.getQuantity()) {
-                throw new ValidationException("Insufficient stock for product " + itemDto.getProductId());
-            }
             OrderItem item = new OrderItem();
             item.setOrder(order);
             item.setProductId(itemDto.getProductId());
@@ -103,10 +231,16 @@ public class OrderService {
             items.add(item);
             totalAmount = totalAmount.add(item.getLineTotal());
         }
+        Map<Long, Integer> deltas = new LinkedHashMap<>();
+        for (OrderItem item : items) {
+            deltas.merge(item.getProductId(), -item.getQuantity(), Integer::sum);
+        }
+        reserveStock(deltas);
         order.setItems(items);
         order.setTotalAmount(totalAmount);
+        // Позиции сохраняются каскадом вместе с заказом, одним batch INSERT
         order = orderRepository.save(order);
-        items.forEach(orderItemRepository::save);
+        recordStats(order.getUserId(), OrderStatus.NEW, 1, totalAmount);
         return orderMapper.toDto(order);
     }
 
@@ -116,7 +250,7 @@ public class OrderService {
         Long principalId = principal.getUserId();
         boolean isAdmin = auth.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-        Order order = orderRepository.findById(id)
+        Order order = orderRepository.findWithItemsById(id)
                 .orElseThrow(() -> new NotFoundException("Order with id: " + id + " not found"));
         if (!isAdmin && !order.getUserId().equals(principalId)) {
             throw new ValidationException("Access denied: not your order");
@@ -133,7 +267,7 @@ public class OrderService {
         String token = principal.getToken();
         boolean isAdmin = auth.getAuthorities().stream().anyMatch(
                 a -> a.getAuthority().equals("ROLE_ADMIN"));
-        Order order = orderRepository.findById(id)
+        Order order = orderRepository.findForUpdateById(id)
                 .orElseThrow(() -> new NotFoundException("Order with id: " + id + " not found"));
         if (!isAdmin && !order.getUserId().equals(principalId)) {
             throw new ValidationException("Access denied: not your order");
@@ -141,21 +275,22 @@ public class OrderService {
         if (order.getStatus() != OrderStatus.NEW) {
             throw new ValidationException("Can only update orders with status NEW");
         }
-        // Откат старых запасов
+        // Откат старых запасов и резерв новых сводятся в одну нетто-дельту на товар
+        Map<Long, Integer> released = new LinkedHashMap<>();
         for (OrderItem item : order.getItems()) {
-            catalogClient.updateStock(item.getProductId(), item.getQuantity(), token);
+            released.merge(item.getProductId(), item.getQuantity(), Integer::sum);
         }
+        Map<Long, Integer> deltas = new LinkedHashMap<>(released);
+        BigDecimal previousTotal = order.getTotalAmount();
         orderItemRepository.deleteAll(order.getItems());
         order.getItems().clear();
         BigDecimal totalAmount = BigDecimal.ZERO;
+        Map<Long, ProductDto> products = loadProducts(dto.getItems(), token);
         for (OrderItemRequestDto itemDto : dto.getItems()) {
-            ProductDto product = catalogClient.getProduct(itemDto.getProductId(), token);
+            ProductDto product = getLoadedProduct(products, itemDto.getProductId());
             if (!product.isActive()) {
                 throw new ValidationException("Product " + itemDto.getProductId() + " is inactive");
             }
-            if (product.getStock() < itemDto.getQuantity()) {
-                throw new ValidationException("Insufficient stock for product " + itemDto.getProductId());
-            }
             OrderItem item = new OrderItem();
             item.setOrder(order);
             item.setProductId(itemDto.getProductId());
@@ -164,21 +299,25 @@ public class OrderService {
             item.setQuantity(itemDto.getQuantity());
             item.setLineTotal(product.getPrice().multiply(BigDecimal.valueOf(itemDto.getQuantity())));
             order.getItems().add(item);
-            catalogClient.updateStock(itemDto.getProductId(), -itemDto.getQuantity(), token);
+            deltas.merge(itemDto.getProductId(), -itemDto.getQuantity(), Integer::sum);
             totalAmount = totalAmount.add(item.getLineTotal());
         }
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            reserveStock(deltas);
+        }
         order.setTotalAmount(totalAmount);
         order.setUpdatedAt(LocalDateTime.now());
+        recordStats(order.getUserId(), order.getStatus(), 0, totalAmount.subtract(previousTotal));
         return orderMapper.toDto(orderRepository.save(order));
     }
 
     public void deleteOrder(Long id, Authentication auth) {
         UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
         Long principalId = principal.getUserId();
-        String token = principal.getToken();
         boolean isAdmin = auth.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-        Order order = orderRepository.findById(id)
+        Order order = orderRepository.findForUpdateById(id)
                 .orElseThrow(() -> new NotFoundException("Order with id: " + id + " not found"));
         if (!isAdmin && !order.getUserId().equals(principalId)) {
             throw new ValidationException("Access denied: not your order");
@@ -186,11 +325,17 @@ public class OrderService {
         if (order.getStatus() != OrderStatus.NEW) {
             throw new ValidationException("Can only delete orders with status NEW");
         }
+        Map<Long, Integer> deltas = new LinkedHashMap<>();
         for (OrderItem item : order.getItems()) {
-            catalogClient.updateStock(item.getProductId(), item.getQuantity(), token);
+            deltas.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        if (!deltas.isEmpty()) {
+            reserveStock(deltas);
         }
         orderItemRepository.deleteAll(order.getItems());
         orderRepository.delete(order);
+        salesRollupService.markDirty(order.getCreatedAt());
+        recordStats(order.getUserId(), order.getStatus(), -1, order.getTotalAmount().negate());
     }
 
     public OrderDto updateStatus(Long id, String status, Authentication auth) {
@@ -198,12 +343,19 @@ public class OrderService {
         Long principalId = principal.getUserId();
         boolean isAdmin = auth.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-        Order order = orderRepository.findById(id)
+        Order order = orderRepository.findForUpdateById(id)
                 .orElseThrow(() -> new NotFoundException("Order with id: " + id + " not found"));
         if (!isAdmin) {
             throw new AccessDeniedException("Only admins can update order status");
         }
-        order.setStatus(OrderStatus.valueOf(status.toUpperCase()));
+        OrderStatus previousStatus = order.getStatus();
+        OrderStatus newStatus = OrderStatus.valueOf(status.toUpperCase());
+        if (newStatus != previousStatus) {
+            // Заказ переходит из строки старого статуса в строку нового вместе со своей суммой
+            recordStats(order.getUserId(), previousStatus, -1, order.getTotalAmount().negate());
+            recordStats(order.getUserId(), newStatus, 1, order.getTotalAmount());
+        }
+        order.setStatus(newStatus);
         order.setUpdatedAt(LocalDateTime.now());
         return orderMapper.toDto(orderRepository.save(order));
     }
@@ -214,7 +366,7 @@ public class OrderService {
         String token = principal.getToken();
         boolean isAdmin = auth.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findForUpdateById(orderId)
                 .orElseThrow(() -> new NotFoundException("Order with id: " + orderId + " not found"));
         if (!isAdmin && !order.getUserId().equals(principalId)) {
             throw new ValidationException("Access denied: not your order");
@@ -222,13 +374,10 @@ public class OrderService {
         if (order.getStatus() != OrderStatus.NEW) {
             throw new ValidationException("Can only add items to orders with status NEW");
         }
-        ProductDto product = catalogClient.getProduct(itemDto.getProductId(), token);
+        ProductDto product = getLoadedProduct(loadProducts(List.of(itemDto), token), itemDto.getProductId());
         if (!product.isActive()) {
             throw new ValidationException("Product " + itemDto.getProductId() + " is inactive");
         }
-        if (product.getStock() < itemDto.getQuantity()) {
-            throw new ValidationException("Insufficient stock for product " + itemDto.getProductId());
-        }
         OrderItem item = new OrderItem();
         item.setOrder(order);
         item.setProductId(itemDto.getProductId());
@@ -238,10 +387,11 @@ public class OrderService {
         item.setLineTotal(product.getPrice().multiply(BigDecimal.valueOf(itemDto.getQuantity())));
         order.getItems().add(item);
         orderItemRepository.save(item);
-        catalogClient.updateStock(itemDto.getProductId(), -itemDto.getQuantity(), token);
+        reserveStock(Map.of(itemDto.getProductId(), -itemDto.getQuantity()));
         BigDecimal totalAmount = order.getItems().stream()
                 .map(OrderItem::getLineTotal)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
+        recordStats(order.getUserId(), order.getStatus(), 0, totalAmount.subtract(order.getTotalAmount()));
         order.setTotalAmount(totalAmount);
         order.setUpdatedAt(LocalDateTime.now());
         return orderMapper.toDto(orderRepository.save(order));
@@ -253,7 +403,7 @@ public class OrderService {
         String token = principal.getToken();
         boolean isAdmin = auth.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findForUpdateById(orderId)
                 .orElseThrow(() -> new NotFoundException("Order with id: " + orderId + " not found"));
         if (!isAdmin && !order.getUserId().equals(principalId)) {
             throw new ValidationException("Access denied: not your order");
@@ -269,19 +419,21 @@ public class OrderService {
         if (!product.isActive()) {
             throw new ValidationException("Product " + item.getProductId() + " is inactive");
         }
-        // Откат старого запаса
-        catalogClient.updateStock(item.getProductId(), item.getQuantity(), token);
+        // Откат старого запаса и резерв нового — одной нетто-дельтой: при отказе каталога ничего не применено
+        int delta = item.getQuantity() - itemDto.getQuantity();
+        if (delta != 0) {
+            reserveStock(Map.of(item.getProductId(), delta));
+        }
         // Новый снимок
         item.setProductName(product.getName());
         item.setProductPrice(product.getPrice());
         item.setQuantity(itemDto.getQuantity());
         item.setLineTotal(product.getPrice().multiply(BigDecimal.valueOf(itemDto.getQuantity())));
         orderItemRepository.save(item);
-        // Новый запас
-        catalogClient.updateStock(item.getProductId(), -itemDto.getQuantity(), token);
         BigDecimal totalAmount = order.getItems().stream()
                 .map(OrderItem::getLineTotal)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
+        recordStats(order.getUserId(), order.getStatus(), 0, totalAmount.subtract(order.getTotalAmount()));
         order.setTotalAmount(totalAmount);
         order.setUpdatedAt(LocalDateTime.now());
         return orderMapper.toDto(orderRepository.save(order));
@@ -290,10 +442,9 @@ public class OrderService {
     public OrderDto deleteOrderItem(Long orderId, Long itemId, Authentication auth) {
         UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
         Long principalId = principal.getUserId();
-        String token = principal.getToken();
         boolean isAdmin = auth.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findForUpdateById(orderId)
                 .orElseThrow(() -> new NotFoundException("Order with id: " + orderId + " not found"));
         if (!isAdmin && !order.getUserId().equals(principalId)) {
             throw new ValidationException("Access denied: not your order");
@@ -305,14 +456,95 @@ public class OrderService {
                 .filter(i -> i.getId().equals(itemId))
                 .findFirst()
                 .orElseThrow(() -> new NotFoundException("Item with id: " + itemId + " not found"));
-        catalogClient.updateStock(item.getProductId(), item.getQuantity(), token);
+        reserveStock(Map.of(item.getProductId(), item.getQuantity()));
         order.getItems().remove(item);
         orderItemRepository.delete(item);
         BigDecimal totalAmount = order.getItems().stream()
                 .map(OrderItem::getLineTotal)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
+        recordStats(order.getUserId(), order.getStatus(), 0, totalAmount.subtract(order.getTotalAmount()));
         order.setTotalAmount(totalAmount);
         order.setUpdatedAt(LocalDateTime.now());
         return orderMapper.toDto(orderRepository.save(order));
     }
+
+    // Резерв в каталоге фиксируется сразу, а заказ — только при коммите. Если транзакция заказа откатилась
+    // (конфликт версий, ограничение БД, любая ошибка после резерва), каталогу уходит обратная дельта
+    private void reserveStock(Map<Long, Integer> deltas) {
+        catalogClient.reserveStock(deltas);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Map<Long, Integer> inverse = new LinkedHashMap<>();
+        deltas.forEach((productId, delta) -> inverse.put(productId, -delta));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    releaseReservation(inverse);
+                } else if (status == STATUS_UNKNOWN) {
+                    log.error("Order transaction outcome is unknown, stock reservation {} kept", deltas);
+                }
+            }
+        });
+    }
+
+    private void releaseReservation(Map<Long, Integer> inverse) {
+        try {
+            catalogClient.reserveStock(inverse);
+        } catch (RuntimeException e) {
+            // Остаток в каталоге придётся поправить вручную: дельта в логе
+            log.error("Failed to compensate stock reservation {} after order rollback", inverse, e);
+        }
+    }
+
+    // user_order_stats меняется в транзакции самого заказа: сводка не расходится с orders
+    private void recordStats(Long userId, OrderStatus status, int countDelta, BigDecimal amountDelta) {
+        if (countDelta == 0 && amountDelta.signum() == 0) {
+            return;
+        }
+        statsRepository.apply(userId, status.name(), countDelta, amountDelta);
+    }
+
+    private static boolean parseInclude(String include) {
+        if (include == null || include.isBlank()) {
+            return false;
+        }
+        if (!include.equals("items")) {
+            throw new ValidationException("Unsupported include: " + include);
+        }
+        return true;
+    }
+
+    // include=items: позиции всей страницы одним IN-запросом вместо ленивой загрузки на каждый заказ
+    private Function<Order, OrderSummaryDto> summaryMapper(List<Order> orders, boolean includeItems) {
+        if (!includeItems) {
+            return orderMapper::toSummaryDto;
+        }
+        Map<Long, List<OrderItemDto>> items = orders.isEmpty() ? Map.of() : orderItemRepository
+                .findByOrderIdInOrderById(orders.stream().map(Order::getId).toList()).stream()
+                .collect(Collectors.groupingBy(item -> item.getOrder().getId(),
+                        Collectors.mapping(orderMapper::toOrderItemDto, Collectors.toList())));
+        return order -> {
+            OrderSummaryDto dto = orderMapper.toSummaryDto(order);
+            dto.setItems(items.getOrDefault(order.getId(), List.of()));
+            return dto;
+        };
+    }
+
+    private Map<Long, ProductDto> loadProducts(List<OrderItemRequestDto> items, String token) {
+        List<Long> productIds = items.stream()
+                .map(OrderItemRequestDto::getProductId)
+                .distinct()
+                .toList();
+        return catalogClient.getProducts(productIds, token);
+    }
+
+    private ProductDto getLoadedProduct(Map<Long, ProductDto> products, Long productId) {
+        ProductDto product = products.get(productId);
+        if (product == null) {
+            throw new NotFoundException("Product not found");
+        }
+        return product;
+    }
 }
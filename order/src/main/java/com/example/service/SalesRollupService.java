@@ -0,0 +1,165 @@
+package com.example.service;
+
+import com.example.dto.order.ProductSalesDto;
+import com.example.dto.order.SalesPointDto;
+import com.example.entity.OrderStatus;
+import com.example.entity.SalesRollupDirtyBucket;
+import com.example.entity.SalesRollupState;
+import com.example.exception.ValidationException;
+import com.example.repository.HourBucket;
+import com.example.repository.OrderRepository;
+import com.example.repository.ProductSales;
+import com.example.repository.SalesPoint;
+import com.example.repository.SalesRollupDirtyBucketRepository;
+import com.example.repository.SalesRollupRepository;
+import com.example.repository.SalesRollupStateRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Отчёты по продажам читают почасовую сводку sales_rollup, а не order_items.
+ * Сводка обновляется инкрементально: пересчитываются только часы, в которых заказы изменились
+ * после водяного знака (orders.updated_at) или были удалены.
+ */
+@Service
+@Transactional
+public class SalesRollupService {
+    public static final int MAX_TOP_PRODUCTS = 100;
+    // Без явного статуса отменённые заказы в продажи не входят
+    private static final Set<OrderStatus> SOLD_STATUSES = EnumSet.complementOf(EnumSet.of(OrderStatus.CANCELLED));
+
+    private final SalesRollupRepository rollupRepository;
+    private final SalesRollupStateRepository stateRepository;
+    private final SalesRollupDirtyBucketRepository dirtyRepository;
+    private final OrderRepository orderRepository;
+    private final Duration lag;
+
+    public SalesRollupService(SalesRollupRepository rollupRepository,
+                              SalesRollupStateRepository stateRepository,
+                              SalesRollupDirtyBucketRepository dirtyRepository,
+                              OrderRepository orderRepository,
+                              @Value("${sales-rollup.lag-ms:60000}") long lagMs) {
+        this.rollupRepository = rollupRepository;
+        this.stateRepository = stateRepository;
+        this.dirtyRepository = dirtyRepository;
+        this.orderRepository = orderRepository;
+        this.lag = Duration.ofMillis(lagMs);
+    }
+
+    // Возвращает число пересчитанных часов
+    @Scheduled(fixedDelayString = "${sales-rollup.interval-ms:300000}")
+    public int refresh() {
+        // Отставание на lag: транзакции, начатые до водяного знака и ещё не закоммиченные, не проскочат мимо
+        LocalDateTime upTo = LocalDateTime.now().minus(lag);
+        SalesRollupState state = stateRepository.findById(SalesRollupState.ID).orElseGet(() -> {
+            SalesRollupState initial = new SalesRollupState();
+            initial.setId(SalesRollupState.ID);
+            initial.setWatermark(LocalDateTime.of(1970, 1, 1, 0, 0));
+            return initial;
+        });
+        if (!upTo.isAfter(state.getWatermark())) {
+            return 0;
+        }
+        Set<LocalDateTime> buckets = new TreeSet<>();
+        for (HourBucket hour : orderRepository.findHoursUpdatedBetween(state.getWatermark(), upTo)) {
+            buckets.add(hour.start());
+        }
+        // Отметки удаляются до пересчёта: новая отметка того же часа дождётся коммита и попадёт в следующий прогон
+        List<SalesRollupDirtyBucket> dirty = dirtyRepository.findAll();
+        dirtyRepository.deleteAllInBatch(dirty);
+        dirty.forEach(bucket -> buckets.add(bucket.getBucketStart()));
+        for (LocalDateTime bucket : buckets) {
+            rollupRepository.deleteBucket(bucket);
+            rollupRepository.rebuildBucket(bucket, bucket.plusHours(1));
+        }
+        state.setWatermark(upTo);
+        stateRepository.save(state);
+        return buckets.size();
+    }
+
+    // Вызывается из OrderService.deleteOrder: удаление не оставляет следа в orders.updated_at
+    public void markDirty(LocalDateTime orderCreatedAt) {
+        dirtyRepository.markDirty(bucketOf(orderCreatedAt));
+    }
+
+    @Transactional(readOnly = true)
+    public List<ProductSalesDto> getTopProducts(LocalDateTime from, LocalDateTime to, String status, int limit) {
+        validatePeriod(from, to);
+        if (limit < 1) {
+            throw new ValidationException("Limit must be positive");
+        }
+        return rollupRepository.findTopProducts(from, to, statuses(status), Limit.of(Math.min(limit, MAX_TOP_PRODUCTS)))
+                .stream()
+                .map(SalesRollupService::toDto)
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public ProductSalesDto getProductSales(Long productId, LocalDateTime from, LocalDateTime to, String status) {
+        validatePeriod(from, to);
+        return rollupRepository.findProductSales(productId, from, to, statuses(status))
+                .map(SalesRollupService::toDto)
+                .orElseGet(() -> new ProductSalesDto(productId, 0, BigDecimal.ZERO, 0));
+    }
+
+    @Transactional(readOnly = true)
+    public List<SalesPointDto> getSeries(LocalDateTime from, LocalDateTime to, String granularity, Long productId,
+                                         String status) {
+        validatePeriod(from, to);
+        List<SalesPoint> hourly = rollupRepository.findHourlySeries(from, to, statuses(status), productId);
+        ChronoUnit unit = switch (granularity == null ? "hour" : granularity.toLowerCase()) {
+            case "hour" -> ChronoUnit.HOURS;
+            case "day" -> ChronoUnit.DAYS;
+            default -> throw new ValidationException("Unsupported granularity: " + granularity);
+        };
+        // Дни сворачиваются из уже агрегированных часов: не больше 24 строк на точку
+        Map<LocalDateTime, SalesPointDto> points = new LinkedHashMap<>();
+        for (SalesPoint point : hourly) {
+            SalesPointDto dto = points.computeIfAbsent(point.bucketStart().truncatedTo(unit),
+                    start -> new SalesPointDto(start, 0, BigDecimal.ZERO));
+            dto.setUnitsSold(dto.getUnitsSold() + point.units());
+            dto.setRevenue(dto.getRevenue().add(point.revenue()));
+        }
+        return new ArrayList<>(points.values());
+    }
+
+    private static LocalDateTime bucketOf(LocalDateTime createdAt) {
+        return createdAt.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private static Set<OrderStatus> statuses(String status) {
+        if (status == null) {
+            return SOLD_STATUSES;
+        }
+        try {
+            return EnumSet.of(OrderStatus.valueOf(status.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Unknown status: " + status);
+        }
+    }
+
+    private static void validatePeriod(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new ValidationException("'from' must be before 'to'");
+        }
+    }
+
+    private static ProductSalesDto toDto(ProductSales sales) {
+        return new ProductSalesDto(sales.productId(), sales.units(), sales.revenue(), sales.orderCount());
+    }
+}
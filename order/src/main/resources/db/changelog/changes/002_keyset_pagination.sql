@@ -0,0 +1,8 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:4
+CREATE INDEX idx_orders_created_id ON orders(created_at, id);
+CREATE INDEX idx_orders_user_created_id ON orders(user_id, created_at, id);
+
+-- rollback DROP INDEX idx_orders_created_id;
+-- rollback DROP INDEX idx_orders_user_created_id;
@@ -0,0 +1,9 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:5
+-- Hibernate берёт id пулом (allocationSize = 50): один nextval резервирует 50 значений
+ALTER SEQUENCE orders_id_seq INCREMENT BY 50;
+ALTER SEQUENCE order_items_id_seq INCREMENT BY 50;
+
+-- rollback ALTER SEQUENCE orders_id_seq INCREMENT BY 1;
+-- rollback ALTER SEQUENCE order_items_id_seq INCREMENT BY 1;
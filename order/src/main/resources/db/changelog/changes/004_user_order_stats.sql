@@ -0,0 +1,17 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:6
+-- Сводка для GET /orders/stats: число и сумма заказов пользователя по статусам.
+-- Ведётся OrderService в тех же транзакциях, что и сами заказы
+CREATE TABLE user_order_stats (
+user_id BIGINT NOT NULL,
+status VARCHAR(32) NOT NULL,
+order_count BIGINT NOT NULL DEFAULT 0,
+total_amount NUMERIC(14,2) NOT NULL DEFAULT 0,
+PRIMARY KEY (user_id, status)
+);
+
+INSERT INTO user_order_stats (user_id, status, order_count, total_amount)
+SELECT user_id, status, count(*), sum(total_amount) FROM orders GROUP BY user_id, status;
+
+-- rollback DROP TABLE user_order_stats;
@@ -0,0 +1,43 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:7
+-- Почасовая сводка продаж по товару и статусу (SalesRollupService); час — по created_at заказа
+CREATE TABLE sales_rollup (
+bucket_start TIMESTAMP NOT NULL,
+product_id BIGINT NOT NULL,
+status VARCHAR(32) NOT NULL,
+units BIGINT NOT NULL,
+revenue NUMERIC(14,2) NOT NULL,
+order_count BIGINT NOT NULL,
+PRIMARY KEY (bucket_start, product_id, status)
+);
+CREATE INDEX idx_sales_rollup_product ON sales_rollup(product_id, bucket_start);
+
+CREATE TABLE sales_rollup_state (
+id INT PRIMARY KEY,
+watermark TIMESTAMP NOT NULL
+);
+
+CREATE TABLE sales_rollup_dirty (
+bucket_start TIMESTAMP PRIMARY KEY
+);
+
+-- Поиск изменённых заказов по водяному знаку
+CREATE INDEX idx_orders_updated_at ON orders(updated_at);
+
+-- rollback DROP INDEX idx_orders_updated_at;
+-- rollback DROP TABLE sales_rollup_dirty;
+-- rollback DROP TABLE sales_rollup_state;
+-- rollback DROP TABLE sales_rollup;
+
+-- changeset konstantin:8
+-- Первичное заполнение по всей истории; дальше — только инкрементальные пересчёты
+INSERT INTO sales_rollup (bucket_start, product_id, status, units, revenue, order_count)
+SELECT date_trunc('hour', o.created_at), i.product_id, o.status, SUM(i.quantity), SUM(i.line_total), COUNT(DISTINCT o.id)
+FROM orders o JOIN order_items i ON i.order_id = o.id
+GROUP BY date_trunc('hour', o.created_at), i.product_id, o.status;
+
+INSERT INTO sales_rollup_state (id, watermark) SELECT 1, COALESCE(MAX(updated_at), CURRENT_TIMESTAMP) FROM orders;
+
+-- rollback DELETE FROM sales_rollup_state;
+-- rollback DELETE FROM sales_rollup;
@@ -0,0 +1,7 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:9
+-- Оптимистическая блокировка заказа (@Version): устаревшая запись не проходит мимо user_order_stats
+ALTER TABLE orders ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- rollback ALTER TABLE orders DROP COLUMN version;
@@ -0,0 +1,12 @@
+-- liquibase formatted sql
+
+-- changeset konstantin:10
+-- Прокрутка заказов с фильтром по статусу: поиск от курсора по (status, created_at, id) и (user_id, status, created_at, id);
+-- первый индекс заменяет idx_orders_status
+CREATE INDEX idx_orders_status_created_id ON orders(status, created_at, id);
+CREATE INDEX idx_orders_user_status_created_id ON orders(user_id, status, created_at, id);
+DROP INDEX idx_orders_status;
+
+-- rollback CREATE INDEX idx_orders_status ON orders(status);
+-- rollback DROP INDEX idx_orders_user_status_created_id;
+-- rollback DROP INDEX idx_orders_status_created_id;
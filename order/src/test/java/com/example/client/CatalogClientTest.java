@@ -1,25 +1,49 @@
 package com.example.client;
 
 import com.example.dto.catalog.ProductDto;
+import com.example.dto.catalog.StockChangeResultDto;
+import com.example.dto.catalog.StockReservationDto;
+import com.example.dto.catalog.StockReservationRequestDto;
 import com.example.exception.NotFoundException;
+import com.example.exception.ServiceUnavailableException;
 import com.example.exception.ValidationException;
 import com.example.util.JwtUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpRequest;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.client.ExpectedCount;
 import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
@@ -47,7 +71,8 @@ class CatalogClientTest {
     @BeforeEach
     void setUp() {
         server = MockRestServiceServer.createServer(catalogClient.getRestTemplate());
-        when(jwtUtil.generateServiceToken()).thenReturn("service-token");
+        catalogClient.invalidateProducts();
+        when(jwtUtil.getServiceToken()).thenReturn("service-token");
 
         productDto = new ProductDto();
         productDto.setId(1L);
@@ -73,6 +98,65 @@ class CatalogClientTest {
         assertThat(result.isActive()).isTrue();
     }
 
+    @Test
+    void getProduct_shouldServeRepeatedReadsFromCache() throws Exception {
+        server.expect(ExpectedCount.once(), requestTo("http://localhost:8081/products/1"))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(productDto), MediaType.APPLICATION_JSON));
+
+        catalogClient.getProduct(1L, "test-token");
+        ProductDto result = catalogClient.getProduct(1L, "test-token");
+
+        assertThat(result.getName()).isEqualTo("Product");
+        server.verify();
+    }
+
+    @Test
+    void getProduct_shouldCoalesceConcurrentMisses() throws Exception {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(ProductDto.class)))
+                .thenAnswer(invocation -> {
+                    calls.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return ResponseEntity.ok(productDto);
+                });
+        CatalogClient client = new CatalogClient(restTemplate, "http://localhost:8081", jwtUtil, true, 4, 16, 5000, 100, 30000, false);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ProductDto>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> client.getProduct(1L, "test-token")));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<ProductDto> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).getId()).isEqualTo(1L);
+            }
+        } finally {
+            callers.shutdownNow();
+            client.shutdown();
+        }
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void getProducts_shouldRequestOnlyUncachedProducts() throws Exception {
+        ProductDto secondProduct = new ProductDto();
+        secondProduct.setId(2L);
+        secondProduct.setName("Second");
+        server.expect(requestTo("http://localhost:8081/products/1"))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(productDto), MediaType.APPLICATION_JSON));
+        server.expect(requestTo("http://localhost:8081/products/batch?ids=2"))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(List.of(secondProduct)), MediaType.APPLICATION_JSON));
+
+        catalogClient.getProduct(1L, "test-token");
+        Map<Long, ProductDto> result = catalogClient.getProducts(List.of(1L, 2L), "test-token");
+
+        assertThat(result).containsOnlyKeys(1L, 2L);
+        server.verify();
+    }
+
     @Test
     void getProduct_shouldThrowNotFoundException() {
         server.expect(requestTo("http://localhost:8081/products/1"))
@@ -104,52 +188,171 @@ class CatalogClientTest {
     }
 
     @Test
-    void updateStock_shouldReturnProduct() throws Exception {
-        ProductDto updatedProduct = new ProductDto();
-        updatedProduct.setId(1L);
-        updatedProduct.setName("Product");
-        updatedProduct.setPrice(BigDecimal.TEN);
-        updatedProduct.setStock(95);
-        updatedProduct.setActive(true);
+    void getProducts_shouldReturnProductsById() throws Exception {
+        ProductDto secondProduct = new ProductDto();
+        secondProduct.setId(2L);
+        secondProduct.setName("Second");
+        secondProduct.setPrice(BigDecimal.ONE);
+        secondProduct.setStock(5);
+        secondProduct.setActive(true);
+        server.expect(requestTo("http://localhost:8081/products/batch?ids=1,2"))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(header("Authorization", "Bearer test-token"))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(List.of(productDto, secondProduct)),
+                        MediaType.APPLICATION_JSON));
 
-        server.expect(requestTo("http://localhost:8081/products/1/stock?delta=-5"))
-                .andExpect(method(HttpMethod.PATCH))
-                .andExpect(header("Authorization", "Bearer service-token"))
-                .andRespond(withSuccess(objectMapper.writeValueAsString(updatedProduct), MediaType.APPLICATION_JSON));
+        Map<Long, ProductDto> result = catalogClient.getProducts(List.of(1L, 2L, 1L), "test-token");
 
-        ProductDto result = catalogClient.updateStock(1L, -5, "test-token");
+        assertThat(result).containsOnlyKeys(1L, 2L);
+        assertThat(result.get(2L).getName()).isEqualTo("Second");
+    }
 
-        assertThat(result.getId()).isEqualTo(1L);
-        assertThat(result.getStock()).isEqualTo(95);
+    @Test
+    void getProducts_shouldThrowNotFoundException() {
+        server.expect(requestTo("http://localhost:8081/products/batch?ids=1"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+        assertThrows(NotFoundException.class, () -> catalogClient.getProducts(List.of(1L), "test-token"));
     }
 
     @Test
-    void updateStock_shouldThrowNotFoundException() {
-        server.expect(requestTo("http://localhost:8081/products/1/stock?delta=-5"))
+    void reserveStock_shouldThrowNotFoundException() {
+        server.expect(requestTo("http://localhost:8081/products/stock"))
                 .andExpect(method(HttpMethod.PATCH))
                 .andExpect(header("Authorization", "Bearer service-token"))
                 .andRespond(withStatus(HttpStatus.NOT_FOUND));
 
-        assertThrows(NotFoundException.class, () -> catalogClient.updateStock(1L, -5, "test-token"));
+        assertThrows(NotFoundException.class, () -> catalogClient.reserveStock(Map.of(1L, -5)));
     }
 
     @Test
-    void updateStock_shouldThrowValidationException() {
-        server.expect(requestTo("http://localhost:8081/products/1/stock?delta=-5"))
+    void reserveStock_shouldThrowRuntimeException() {
+        server.expect(requestTo("http://localhost:8081/products/stock"))
                 .andExpect(method(HttpMethod.PATCH))
                 .andExpect(header("Authorization", "Bearer service-token"))
-                .andRespond(withStatus(HttpStatus.UNPROCESSABLE_ENTITY));
+                .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
 
-        assertThrows(ValidationException.class, () -> catalogClient.updateStock(1L, -5, "test-token"));
+        assertThrows(RuntimeException.class, () -> catalogClient.reserveStock(Map.of(1L, -5)));
     }
 
     @Test
-    void updateStock_shouldThrowRuntimeException() {
-        server.expect(requestTo("http://localhost:8081/products/1/stock?delta=-5"))
+    void reserveStock_shouldSendAllDeltasInOneRequest() throws Exception {
+        StockReservationDto reservation = new StockReservationDto(true, List.of(
+                new StockChangeResultDto(1L, -2, StockChangeResultDto.APPLIED),
+                new StockChangeResultDto(2L, -1, StockChangeResultDto.APPLIED)));
+        server.expect(requestTo("http://localhost:8081/products/stock"))
                 .andExpect(method(HttpMethod.PATCH))
                 .andExpect(header("Authorization", "Bearer service-token"))
-                .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+                // Внутренний вызов идёт в Smile: тело запроса бинарное, ответ запрашивается в нём же
+                .andExpect(header("Content-Type", "application/x-jackson-smile"))
+                .andExpect(request -> assertThat(new ObjectMapper(new SmileFactory()).readValue(
+                        ((MockClientHttpRequest) request).getBodyAsBytes(), StockReservationRequestDto.class).getItems())
+                        .hasSize(2))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(reservation), MediaType.APPLICATION_JSON));
+
+        StockReservationDto result = catalogClient.reserveStock(new LinkedHashMap<>(Map.of(1L, -2, 2L, -1)));
+
+        assertThat(result.isApplied()).isTrue();
+        assertThat(result.getItems()).hasSize(2);
+    }
+
+    @Test
+    void reserveStock_shouldThrowValidationException_whenInsufficientStock() throws Exception {
+        StockReservationDto reservation = new StockReservationDto(false, List.of(
+                new StockChangeResultDto(1L, -2, StockChangeResultDto.ROLLED_BACK),
+                new StockChangeResultDto(2L, -50, StockChangeResultDto.INSUFFICIENT_STOCK)));
+        server.expect(requestTo("http://localhost:8081/products/stock"))
+                .andExpect(method(HttpMethod.PATCH))
+                .andRespond(withStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(objectMapper.writeValueAsString(reservation)));
+
+        ValidationException e = assertThrows(ValidationException.class,
+                () -> catalogClient.reserveStock(Map.of(1L, -2, 2L, -50)));
+        assertThat(e.getMessage()).isEqualTo("Insufficient stock for product 2");
+    }
+
+    @Test
+    void getProducts_shouldFanOutSingleRequests_whenBatchDisabled() throws Exception {
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer fanOutServer = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+        CatalogClient client = new CatalogClient(restTemplate, "http://localhost:8081", jwtUtil, false, 4, 16, 5000, 100, 30000, false);
+        ProductDto secondProduct = new ProductDto();
+        secondProduct.setId(2L);
+        secondProduct.setName("Second");
+        fanOutServer.expect(requestTo("http://localhost:8081/products/1"))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(productDto), MediaType.APPLICATION_JSON));
+        fanOutServer.expect(requestTo("http://localhost:8081/products/2"))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(secondProduct), MediaType.APPLICATION_JSON));
+
+        Map<Long, ProductDto> result = client.getProducts(List.of(1L, 2L), "test-token");
+
+        assertThat(result).containsOnlyKeys(1L, 2L);
+        fanOutServer.verify();
+        client.shutdown();
+    }
+
+    @Test
+    void fanOut_shouldPropagateFirstFailure() {
+        CatalogClient client = new CatalogClient(new RestTemplate(), "http://localhost:8081", jwtUtil, true, 4, 16, 5000, 100, 30000, false);
+
+        assertThrows(NotFoundException.class, () -> client.fanOut(List.of(1L, 2L), id -> {
+            if (id == 2L) {
+                throw new NotFoundException("Product not found");
+            }
+            return id;
+        }));
+        client.shutdown();
+    }
+
+    @Test
+    void fanOut_shouldFail_whenDeadlineExceeded() {
+        CatalogClient client = new CatalogClient(new RestTemplate(), "http://localhost:8081", jwtUtil, true, 4, 16, 50, 100, 30000, false);
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> client.fanOut(List.of(1L), id -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            return id;
+        }));
+        assertThat(e.getMessage()).contains("no response within 50 ms");
+        client.shutdown();
+    }
+
+    @Test
+    void fanOut_shouldInterruptRunningCalls_whenDeadlineExceeded() throws Exception {
+        CatalogClient client = new CatalogClient(new RestTemplate(), "http://localhost:8081", jwtUtil, true, 1, 16, 50, 100, 30000, false);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        assertThrows(RuntimeException.class, () -> client.fanOut(List.of(1L), id -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return id;
+        }));
+        assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+        client.shutdown();
+    }
+
+    @Test
+    void fanOut_shouldReject_whenQueueIsFull() {
+        CatalogClient client = new CatalogClient(new RestTemplate(), "http://localhost:8081", jwtUtil, true, 1, 1, 5000, 100, 30000, false);
+        CountDownLatch release = new CountDownLatch(1);
 
-        assertThrows(RuntimeException.class, () -> catalogClient.updateStock(1L, -5, "test-token"));
+        assertThrows(ServiceUnavailableException.class, () -> client.fanOut(List.of(1L, 2L, 3L), id -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return id;
+        }));
+        release.countDown();
+        client.shutdown();
     }
 }
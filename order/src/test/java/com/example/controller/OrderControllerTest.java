@@ -1,6 +1,7 @@
 package com.example.controller;
 
 import com.example.config.SecurityConfig;
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.order.*;
 import com.example.exception.NotFoundException;
@@ -65,7 +66,7 @@ class OrderControllerTest {
     void getOrders_shouldReturn200_forUser() throws Exception {
         PageDto<OrderSummaryDto> pageDto = new PageDto<>();
         pageDto.setContent(List.of(new OrderSummaryDto()));
-        when(orderService.getOrders(any(), eq(null), eq(null), any())).thenReturn(pageDto);
+        when(orderService.getOrders(any(), eq(null), eq(null), eq(true), eq(null), any())).thenReturn(pageDto);
         when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
 
         mockMvc.perform(get("/orders")
@@ -76,11 +77,41 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.content").isArray());
     }
 
+    @Test
+    void scrollOrders_shouldReturn200_forUser() throws Exception {
+        CursorPageDto<OrderSummaryDto> pageDto = new CursorPageDto<>(List.of(new OrderSummaryDto()), 10, false, null);
+        when(orderService.scrollOrders(eq("abc"), eq(10), eq(null), eq(null), any())).thenReturn(pageDto);
+        when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
+
+        mockMvc.perform(get("/orders/scroll")
+                        .param("after", "abc")
+                        .param("size", "10")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").isArray())
+                .andExpect(jsonPath("$.hasNext").value(false));
+    }
+
+    @Test
+    void getStats_shouldReturn200_forUser() throws Exception {
+        OrderStatsDto stats = new OrderStatsDto();
+        stats.setUserId(1L);
+        stats.setTotalOrders(3);
+        when(orderService.getStats(eq(null), any())).thenReturn(stats);
+        when(jwtUtil.validateToken("test-token")).thenReturn(userClaims);
+
+        mockMvc.perform(get("/orders/stats")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userId").value(1))
+                .andExpect(jsonPath("$.totalOrders").value(3));
+    }
+
     @Test
     void getOrders_shouldReturn200_forAdminWithFilters() throws Exception {
         PageDto<OrderSummaryDto> pageDto = new PageDto<>();
         pageDto.setContent(List.of(new OrderSummaryDto()));
-        when(orderService.getOrders(any(), eq("NEW"), eq(1L), any())).thenReturn(pageDto);
+        when(orderService.getOrders(any(), eq("NEW"), eq(1L), eq(false), eq(null), any())).thenReturn(pageDto);
         when(jwtUtil.validateToken("test-token")).thenReturn(adminClaims);
 
         mockMvc.perform(get("/orders")
@@ -88,6 +119,7 @@ class OrderControllerTest {
                         .param("size", "10")
                         .param("status", "NEW")
                         .param("userId", "1")
+                        .param("withTotal", "false")
                         .header("Authorization", "Bearer test-token"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content").isArray());
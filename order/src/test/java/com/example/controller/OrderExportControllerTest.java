@@ -0,0 +1,74 @@
+package com.example.controller;
+
+import com.example.config.SecurityConfig;
+import com.example.service.OrderExportService;
+import com.example.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(OrderExportController.class)
+@Import(SecurityConfig.class)
+class OrderExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private OrderExportService orderExportService;
+
+    @MockBean
+    private JwtUtil jwtUtil;
+
+    @Test
+    void exportOrders_shouldStreamCsv_forAdmin() throws Exception {
+        when(jwtUtil.validateToken("test-token")).thenReturn(claims("ROLE_ADMIN"));
+        when(orderExportService.export(OrderExportService.Format.CSV, null, null, "PAID"))
+                .thenReturn(out -> out.write("id\n1\n".getBytes(StandardCharsets.UTF_8)));
+
+        MvcResult result = mockMvc.perform(get("/orders/export")
+                        .param("format", "csv")
+                        .param("status", "PAID")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=orders.csv"))
+                .andExpect(content().string("id\n1\n"));
+    }
+
+    @Test
+    void exportOrders_shouldReturn403_forUser() throws Exception {
+        when(jwtUtil.validateToken("test-token")).thenReturn(claims("ROLE_USER"));
+
+        mockMvc.perform(get("/orders/export")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isForbidden());
+        verify(orderExportService, never()).export(any(), any(), any(), any());
+    }
+
+    private static Claims claims(String role) {
+        return Jwts.claims()
+                .setSubject("test")
+                .add("role", role)
+                .add("uid", 1L)
+                .add("fio", "Test").build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.controller;
+
+import com.example.config.SecurityConfig;
+import com.example.dto.order.ProductSalesDto;
+import com.example.service.SalesRollupService;
+import com.example.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(SalesReportController.class)
+@Import(SecurityConfig.class)
+class SalesReportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private SalesRollupService salesRollupService;
+
+    @MockBean
+    private JwtUtil jwtUtil;
+
+    @Test
+    void getTopProducts_shouldReturn200_forAdmin() throws Exception {
+        when(jwtUtil.validateToken("test-token")).thenReturn(claims("ROLE_ADMIN"));
+        when(salesRollupService.getTopProducts(LocalDateTime.of(2024, 1, 1, 0, 0),
+                LocalDateTime.of(2024, 2, 1, 0, 0), null, 20))
+                .thenReturn(List.of(new ProductSalesDto(1L, 3, new BigDecimal("30.00"), 2)));
+
+        mockMvc.perform(get("/orders/reports/products")
+                        .param("from", "2024-01-01T00:00:00")
+                        .param("to", "2024-02-01T00:00:00")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].productId").value(1))
+                .andExpect(jsonPath("$[0].unitsSold").value(3));
+    }
+
+    @Test
+    void getSeries_shouldReturn403_forUser() throws Exception {
+        when(jwtUtil.validateToken("test-token")).thenReturn(claims("ROLE_USER"));
+
+        mockMvc.perform(get("/orders/reports/series")
+                        .param("from", "2024-01-01T00:00:00")
+                        .param("to", "2024-02-01T00:00:00")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isForbidden());
+        verify(salesRollupService, never()).getSeries(any(), any(), any(), any(), any());
+    }
+
+    private static Claims claims(String role) {
+        return Jwts.claims()
+                .setSubject("test")
+                .add("role", role)
+                .add("uid", 1L)
+                .add("fio", "Test").build();
+    }
+}
@@ -2,20 +2,28 @@ package com.example.repository;
 
 import com.example.ApplicationOrder;
 import com.example.entity.Order;
+import com.example.entity.OrderItem;
 import com.example.entity.OrderStatus;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DataJpaTest(excludeAutoConfiguration = LiquibaseAutoConfiguration.class)
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
@@ -25,6 +33,96 @@ class OrderRepositoryTest {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void save_shouldCascadeItemsWithPooledIds() {
+        Order order = new Order();
+        order.setUserId(1L);
+        order.setUserFio("test");
+        order.setStatus(OrderStatus.NEW);
+        order.setTotalAmount(BigDecimal.TEN);
+        order.setCreatedAt(LocalDateTime.now());
+        order.setUpdatedAt(LocalDateTime.now());
+        for (long productId = 1; productId <= 3; productId++) {
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProductId(productId);
+            item.setProductName("Product " + productId);
+            item.setProductPrice(BigDecimal.ONE);
+            item.setQuantity(1);
+            item.setLineTotal(BigDecimal.ONE);
+            order.getItems().add(item);
+        }
+
+        Order saved = orderRepository.saveAndFlush(order);
+
+        // id из пула выдаются при persist, до INSERT — подряд, без обращения к БД за каждым
+        List<Long> ids = saved.getItems().stream().map(OrderItem::getId).toList();
+        assertThat(ids).doesNotContainNull();
+        assertThat(ids.get(2) - ids.get(0)).isEqualTo(2);
+        assertThat(orderRepository.findById(saved.getId()).orElseThrow().getItems()).hasSize(3);
+    }
+
+    @Test
+    void findWithItemsById_shouldFetchItemsInSameQuery() {
+        Order order = new Order();
+        order.setUserId(1L);
+        order.setUserFio("test");
+        order.setStatus(OrderStatus.NEW);
+        order.setTotalAmount(BigDecimal.TEN);
+        order.setCreatedAt(LocalDateTime.now());
+        order.setUpdatedAt(LocalDateTime.now());
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProductId(1L);
+        item.setProductName("Product");
+        item.setProductPrice(BigDecimal.TEN);
+        item.setQuantity(1);
+        item.setLineTotal(BigDecimal.TEN);
+        order.getItems().add(item);
+        Long id = orderRepository.saveAndFlush(order).getId();
+        entityManager.clear();
+
+        Order found = orderRepository.findWithItemsById(id).orElseThrow();
+
+        assertThat(Hibernate.isInitialized(found.getItems())).isTrue();
+        assertThat(found.getItems()).hasSize(1);
+        assertThat(orderItemRepository.findByOrderIdInOrderById(List.of(id, id + 1000)))
+                .extracting(OrderItem::getProductName).containsExactly("Product");
+    }
+
+    @Test
+    void save_shouldRejectStaleStatusTransition() {
+        Order order = new Order();
+        order.setUserId(1L);
+        order.setUserFio("test");
+        order.setStatus(OrderStatus.NEW);
+        order.setTotalAmount(BigDecimal.TEN);
+        order.setCreatedAt(LocalDateTime.now());
+        order.setUpdatedAt(LocalDateTime.now());
+        Long id = orderRepository.saveAndFlush(order).getId();
+        entityManager.clear();
+        // Второй запрос прочитал заказ в статусе NEW до того, как первый перевёл его в PAID
+        Order stale = orderRepository.findById(id).orElseThrow();
+        entityManager.detach(stale);
+
+        Order paid = orderRepository.findForUpdateById(id).orElseThrow();
+        paid.setStatus(OrderStatus.PAID);
+        orderRepository.saveAndFlush(paid);
+        entityManager.clear();
+        stale.setStatus(OrderStatus.CANCELLED);
+
+        assertThatThrownBy(() -> orderRepository.saveAndFlush(stale))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        entityManager.clear();
+        assertThat(orderRepository.findById(id).orElseThrow().getStatus()).isEqualTo(OrderStatus.PAID);
+    }
+
     @Test
     void findByUserId_shouldReturnOrders() {
         Order order = new Order();
@@ -76,4 +174,46 @@ class OrderRepositoryTest {
         assertThat(result.getContent().get(0).getUserId()).isEqualTo(1L);
         assertThat(result.getContent().get(0).getStatus()).isEqualTo(OrderStatus.NEW);
     }
+
+    @Test
+    void findSliceByUserId_shouldReportNextPage() {
+        for (int i = 0; i < 2; i++) {
+            Order order = new Order();
+            order.setUserId(1L);
+            order.setUserFio("test");
+            order.setStatus(OrderStatus.NEW);
+            order.setTotalAmount(BigDecimal.TEN);
+            order.setCreatedAt(LocalDateTime.now());
+            order.setUpdatedAt(LocalDateTime.now());
+            orderRepository.save(order);
+        }
+
+        Slice<Order> result = orderRepository.findSliceByUserId(1L, PageRequest.of(0, 1));
+
+        assertThat(result.getContent()).hasSize(1);
+        assertThat(result.hasNext()).isTrue();
+    }
+
+    @Test
+    void findPageAfter_shouldSeekNewestFirst() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        for (int i = 0; i < 3; i++) {
+            Order order = new Order();
+            order.setUserId(1L);
+            order.setUserFio("test");
+            order.setStatus(OrderStatus.NEW);
+            order.setTotalAmount(BigDecimal.TEN);
+            order.setCreatedAt(now.plusMinutes(i));
+            order.setUpdatedAt(now);
+            orderRepository.save(order);
+        }
+
+        List<Order> first = orderRepository.findByUserIdOrderByCreatedAtDescIdDesc(1L, Limit.of(2));
+        Order last = first.get(1);
+        List<Order> next = orderRepository.findPageAfterByUserIdAndStatus(
+                1L, OrderStatus.NEW, last.getCreatedAt(), last.getId(), Limit.of(2));
+
+        assertThat(first).extracting(Order::getCreatedAt).containsExactly(now.plusMinutes(2), now.plusMinutes(1));
+        assertThat(next).extracting(Order::getCreatedAt).containsExactly(now);
+    }
 }
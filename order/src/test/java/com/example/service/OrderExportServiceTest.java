@@ -0,0 +1,104 @@
+package com.example.service;
+
+import com.example.ApplicationOrder;
+import com.example.entity.Order;
+import com.example.entity.OrderStatus;
+import com.example.exception.ValidationException;
+import com.example.repository.OrderRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest(excludeAutoConfiguration = LiquibaseAutoConfiguration.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import(ApplicationOrder.class)
+class OrderExportServiceTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private OrderExportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new OrderExportService(dataSource, transactionManager, objectMapper, 2);
+        saveOrder("Ivanov, Ivan", OrderStatus.PAID, DAY.plusHours(1));
+        saveOrder("Petrov \"Petya\"", OrderStatus.NEW, DAY.plusHours(2));
+        saveOrder("Sidorov", OrderStatus.PAID, DAY.plusDays(1));
+        saveOrder("Old", OrderStatus.PAID, DAY.minusDays(1));
+    }
+
+    @Test
+    void export_shouldStreamNdjsonInCreatedOrder_withFilters() throws Exception {
+        String body = run(OrderExportService.Format.NDJSON, DAY, DAY.plusDays(2), "paid");
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines).allSatisfy(line -> assertThat(line).startsWith("{").endsWith("}"));
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("userFio").asText()).isEqualTo("Ivanov, Ivan");
+        assertThat(first.get("status").asText()).isEqualTo("PAID");
+        assertThat(first.get("createdAt").asText()).isEqualTo("2024-03-01T01:00");
+        assertThat(objectMapper.readTree(lines[1]).get("userFio").asText()).isEqualTo("Sidorov");
+    }
+
+    @Test
+    void export_shouldEscapeCsvFields() throws Exception {
+        String body = run(OrderExportService.Format.CSV, DAY, DAY.plusDays(1), null);
+
+        String[] lines = body.split("\n");
+        assertThat(lines[0]).isEqualTo("id,userId,userFio,status,totalAmount,createdAt,updatedAt");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[1]).contains(",\"Ivanov, Ivan\",PAID,10.00,");
+        assertThat(lines[2]).contains(",\"Petrov \"\"Petya\"\"\",NEW,");
+    }
+
+    @Test
+    void export_shouldRejectUnknownStatusBeforeStreaming() {
+        assertThrows(ValidationException.class,
+                () -> service.export(OrderExportService.Format.CSV, null, null, "lost"));
+        assertThrows(ValidationException.class, () -> OrderExportService.Format.parse("xml"));
+    }
+
+    private String run(OrderExportService.Format format, LocalDateTime from, LocalDateTime to, String status)
+            throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(format, from, to, status).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private void saveOrder(String fio, OrderStatus status, LocalDateTime createdAt) {
+        Order order = new Order();
+        order.setUserId(1L);
+        order.setUserFio(fio);
+        order.setStatus(status);
+        order.setTotalAmount(BigDecimal.TEN);
+        order.setCreatedAt(createdAt);
+        order.setUpdatedAt(createdAt);
+        orderRepository.saveAndFlush(order);
+    }
+}
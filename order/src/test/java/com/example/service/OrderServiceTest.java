@@ -1,37 +1,50 @@
 package com.example.service;
 
 import com.example.client.CatalogClient;
+import com.example.dto.CursorPageDto;
 import com.example.dto.PageDto;
 import com.example.dto.catalog.ProductDto;
 import com.example.dto.order.OrderDto;
+import com.example.dto.order.OrderItemDto;
 import com.example.dto.order.OrderItemRequestDto;
 import com.example.dto.order.OrderRequestDto;
+import com.example.dto.order.OrderStatsDto;
 import com.example.dto.order.OrderSummaryDto;
 import com.example.entity.Order;
 import com.example.entity.OrderItem;
 import com.example.entity.OrderStatus;
+import com.example.entity.UserOrderStats;
 import com.example.exception.NotFoundException;
 import com.example.exception.ValidationException;
 import com.example.mapper.OrderMapper;
 import com.example.repository.OrderItemRepository;
 import com.example.repository.OrderRepository;
+import com.example.repository.UserOrderStatsRepository;
 import com.example.security.UserPrincipal;
+import com.example.util.CursorCodec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -47,6 +60,12 @@ class OrderServiceTest {
     @Mock
     private OrderItemRepository orderItemRepository;
 
+    @Mock
+    private UserOrderStatsRepository statsRepository;
+
+    @Mock
+    private SalesRollupService salesRollupService;
+
     @Mock
     private OrderMapper orderMapper;
 
@@ -96,7 +115,7 @@ class OrderServiceTest {
         pageDto.setTotalElements(1);
         when(orderMapper.toSummaryDto(any())).thenReturn(new OrderSummaryDto());
 
-        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, null, null, userAuth);
+        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, null, null, true, null, userAuth);
 
         assertThat(result.getContent()).hasSize(1);
         assertThat(result.getTotalElements()).isEqualTo(1);
@@ -116,7 +135,7 @@ class OrderServiceTest {
         pageDto.setTotalElements(1);
         when(orderMapper.toSummaryDto(any())).thenReturn(new OrderSummaryDto());
 
-        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, "NEW", null, userAuth);
+        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, "NEW", null, true, null, userAuth);
 
         assertThat(result.getContent()).hasSize(1);
         assertThat(result.getTotalElements()).isEqualTo(1);
@@ -135,7 +154,7 @@ class OrderServiceTest {
         pageDto.setTotalElements(1);
         when(orderMapper.toSummaryDto(any())).thenReturn(new OrderSummaryDto());
 
-        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, null, null, adminAuth);
+        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, null, null, true, null, adminAuth);
 
         assertThat(result.getContent()).hasSize(1);
         assertThat(result.getTotalElements()).isEqualTo(1);
@@ -154,7 +173,7 @@ class OrderServiceTest {
         pageDto.setTotalElements(1);
         when(orderMapper.toSummaryDto(any())).thenReturn(new OrderSummaryDto());
 
-        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, "NEW", null, adminAuth);
+        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, "NEW", null, true, null, adminAuth);
 
         assertThat(result.getContent()).hasSize(1);
         assertThat(result.getTotalElements()).isEqualTo(1);
@@ -173,7 +192,7 @@ class OrderServiceTest {
         pageDto.setTotalElements(1);
         when(orderMapper.toSummaryDto(any())).thenReturn(new OrderSummaryDto());
 
-        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, null, 999L, adminAuth);
+        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, null, 999L, true, null, adminAuth);
 
         assertThat(result.getContent()).hasSize(1);
         assertThat(result.getTotalElements()).isEqualTo(1);
@@ -192,13 +211,137 @@ class OrderServiceTest {
         pageDto.setTotalElements(1);
         when(orderMapper.toSummaryDto(any())).thenReturn(new OrderSummaryDto());
 
-        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, "NEW", 999L, adminAuth);
+        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, "NEW", 999L, true, null, adminAuth);
 
         assertThat(result.getContent()).hasSize(1);
         assertThat(result.getTotalElements()).isEqualTo(1);
         verify(orderRepository).findByUserIdAndStatus(999L, OrderStatus.NEW, pageable);
     }
 
+    @Test
+    void getOrders_shouldReturnSliceWithoutCount_whenWithTotalFalse() {
+        Pageable pageable = PageRequest.of(0, 1);
+        when(orderRepository.findSliceByUserId(1L, pageable))
+                .thenReturn(new SliceImpl<>(List.of(new Order()), pageable, true));
+        when(orderMapper.toSummaryDto(any())).thenReturn(new OrderSummaryDto());
+
+        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, null, 999L, false, null, userAuth);
+
+        assertThat(result.getContent()).hasSize(1);
+        assertThat(result.isHasNext()).isTrue();
+        assertThat(result.getTotalElements()).isEqualTo(-1);
+        verify(orderRepository, never()).findByUserId(any(), any());
+    }
+
+    @Test
+    void getOrders_shouldLoadItemsForWholePageInOneQuery_whenIncludeItems() {
+        Pageable pageable = PageRequest.of(0, 10);
+        Order first = new Order();
+        first.setId(1L);
+        Order second = new Order();
+        second.setId(2L);
+        OrderItem item = new OrderItem();
+        item.setId(10L);
+        item.setOrder(first);
+        when(orderRepository.findByUserId(1L, pageable))
+                .thenReturn(new PageImpl<>(List.of(first, second), pageable, 2));
+        when(orderItemRepository.findByOrderIdInOrderById(List.of(1L, 2L))).thenReturn(List.of(item));
+        when(orderMapper.toSummaryDto(any())).thenAnswer(inv -> new OrderSummaryDto());
+        OrderItemDto itemDto = new OrderItemDto();
+        when(orderMapper.toOrderItemDto(item)).thenReturn(itemDto);
+
+        PageDto<OrderSummaryDto> result = orderService.getOrders(pageable, null, null, true, "items", userAuth);
+
+        assertThat(result.getContent().get(0).getItems()).containsExactly(itemDto);
+        assertThat(result.getContent().get(1).getItems()).isEmpty();
+        verify(orderItemRepository, times(1)).findByOrderIdInOrderById(any());
+    }
+
+    @Test
+    void getOrders_shouldThrowValidationException_forUnsupportedInclude() {
+        assertThrows(ValidationException.class,
+                () -> orderService.getOrders(PageRequest.of(0, 10), null, null, true, "customer", userAuth));
+    }
+
+    // scrollOrders tests
+    @Test
+    void scrollOrders_shouldScopeToPrincipalAndReturnCursor_forUser() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 12, 0);
+        Order first = new Order();
+        first.setId(5L);
+        first.setCreatedAt(createdAt);
+        Order extra = new Order();
+        extra.setId(4L);
+        extra.setCreatedAt(createdAt.minusMinutes(1));
+        when(orderRepository.findByUserIdAndStatusOrderByCreatedAtDescIdDesc(1L, OrderStatus.NEW, Limit.of(2)))
+                .thenReturn(List.of(first, extra));
+        when(orderMapper.toSummaryDto(any())).thenReturn(new OrderSummaryDto());
+
+        CursorPageDto<OrderSummaryDto> result = orderService.scrollOrders(null, 1, "new", 999L, userAuth);
+
+        assertThat(result.getContent()).hasSize(1);
+        assertThat(result.isHasNext()).isTrue();
+        assertThat(CursorCodec.decode(result.getNextCursor()))
+                .isEqualTo(new CursorCodec.Cursor(createdAt.toString(), 5L));
+    }
+
+    @Test
+    void scrollOrders_shouldSeekFromCursor_forAdmin() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(orderRepository.findPageAfter(createdAt, 5L, Limit.of(11))).thenReturn(List.of());
+
+        CursorPageDto<OrderSummaryDto> result = orderService.scrollOrders(
+                CursorCodec.encode(createdAt.toString(), 5L), 10, null, null, adminAuth);
+
+        assertThat(result.getContent()).isEmpty();
+        assertThat(result.isHasNext()).isFalse();
+        assertThat(result.getNextCursor()).isNull();
+    }
+
+    @Test
+    void scrollOrders_shouldThrowValidationException_forInvalidCursor() {
+        String cursor = CursorCodec.encode("not-a-date", 5L);
+
+        assertThrows(ValidationException.class, () -> orderService.scrollOrders(cursor, 10, null, null, userAuth));
+    }
+
+    // getStats tests
+    @Test
+    void getStats_shouldAggregateRows_andExcludeCancelledFromTotalSpent() {
+        when(statsRepository.findByUserId(1L)).thenReturn(List.of(
+                statsRow(OrderStatus.NEW, 2, "30.00"),
+                statsRow(OrderStatus.CANCELLED, 1, "5.00"),
+                statsRow(OrderStatus.PAID, 0, "0.00")));
+
+        OrderStatsDto result = orderService.getStats(999L, userAuth);
+
+        assertThat(result.getUserId()).isEqualTo(1L);
+        assertThat(result.getTotalOrders()).isEqualTo(3);
+        assertThat(result.getTotalSpent()).isEqualByComparingTo("30.00");
+        assertThat(result.getOrdersByStatus()).containsOnlyKeys("NEW", "CANCELLED");
+        verify(statsRepository, never()).findByUserId(999L);
+    }
+
+    @Test
+    void getStats_shouldUseRequestedUser_forAdmin() {
+        when(statsRepository.findByUserId(999L)).thenReturn(List.of());
+
+        OrderStatsDto result = orderService.getStats(999L, adminAuth);
+
+        assertThat(result.getUserId()).isEqualTo(999L);
+        assertThat(result.getTotalOrders()).isZero();
+        assertThat(result.getTotalSpent()).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
+    private static UserOrderStats statsRow(OrderStatus status, long count, String amount) {
+        UserOrderStats row = new UserOrderStats();
+        row.setUserId(1L);
+        row.setStatus(status);
+        row.setOrderCount(count);
+        row.setTotalAmount(new BigDecimal(amount));
+        return row;
+    }
+
     // createOrder tests
     @Test
     void createOrder_shouldReturnOrder() {
@@ -211,16 +354,107 @@ class OrderServiceTest {
         order.setId(1L);
         order.setUserId(1L);
         order.setItems(new ArrayList<>());
-        when(catalogClient.getProduct(1L, "test-token")).thenReturn(productDto);
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, productDto));
         when(orderRepository.save(any())).thenReturn(order);
         when(orderMapper.toDto(any())).thenReturn(new OrderDto());
 
         OrderDto result = orderService.createOrder(requestDto, userAuth);
 
         assertThat(result).isNotNull();
-        verify(catalogClient).getProduct(1L, "test-token");
+        verify(catalogClient).getProducts(List.of(1L), "test-token");
+        verify(catalogClient).reserveStock(Map.of(1L, -2));
         verify(orderRepository).save(any());
-        verify(orderItemRepository, times(1)).save(any());
+        verify(orderItemRepository, never()).save(any());
+        verify(statsRepository).apply(1L, "NEW", 1, new BigDecimal("20"));
+    }
+
+    @Test
+    void createOrder_shouldReleaseReservation_whenTransactionRollsBack() {
+        OrderRequestDto requestDto = new OrderRequestDto();
+        OrderItemRequestDto itemDto = new OrderItemRequestDto();
+        itemDto.setProductId(1L);
+        itemDto.setQuantity(2);
+        requestDto.setItems(List.of(itemDto));
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, productDto));
+        when(orderRepository.save(any())).thenThrow(new DataIntegrityViolationException("constraint"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThrows(DataIntegrityViolationException.class, () -> orderService.createOrder(requestDto, userAuth));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(catalogClient).reserveStock(Map.of(1L, -2));
+        verify(catalogClient).reserveStock(Map.of(1L, 2)); // обратная дельта после отката
+    }
+
+    @Test
+    void deleteOrder_shouldKeepReturnedStock_whenTransactionCommits() {
+        Order order = new Order();
+        order.setId(1L);
+        order.setUserId(1L);
+        order.setStatus(OrderStatus.NEW);
+        order.setTotalAmount(new BigDecimal("20"));
+        order.setCreatedAt(LocalDateTime.now());
+        OrderItem item = new OrderItem();
+        item.setProductId(1L);
+        item.setQuantity(2);
+        order.setItems(new ArrayList<>(List.of(item)));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            orderService.deleteOrder(1L, userAuth);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(catalogClient, times(1)).reserveStock(any());
+        verify(catalogClient).reserveStock(Map.of(1L, 2));
+    }
+
+    @Test
+    void createOrder_shouldLoadAllProductsInOneCall() {
+        OrderRequestDto requestDto = new OrderRequestDto();
+        OrderItemRequestDto firstItem = new OrderItemRequestDto();
+        firstItem.setProductId(1L);
+        firstItem.setQuantity(2);
+        OrderItemRequestDto secondItem = new OrderItemRequestDto();
+        secondItem.setProductId(2L);
+        secondItem.setQuantity(1);
+        requestDto.setItems(List.of(firstItem, secondItem));
+        ProductDto secondProduct = new ProductDto();
+        secondProduct.setId(2L);
+        secondProduct.setName("Second");
+        secondProduct.setPrice(BigDecimal.ONE);
+        secondProduct.setStock(10);
+        secondProduct.setActive(true);
+        when(catalogClient.getProducts(List.of(1L, 2L), "test-token"))
+                .thenReturn(Map.of(1L, productDto, 2L, secondProduct));
+        when(orderRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(orderMapper.toDto(any())).thenReturn(new OrderDto());
+
+        orderService.createOrder(requestDto, userAuth);
+
+        verify(catalogClient).getProducts(List.of(1L, 2L), "test-token");
+        verify(catalogClient, never()).getProduct(any(), any());
+    }
+
+    @Test
+    void createOrder_shouldThrowNotFoundException_whenProductMissing() {
+        OrderRequestDto requestDto = new OrderRequestDto();
+        OrderItemRequestDto itemDto = new OrderItemRequestDto();
+        itemDto.setProductId(1L);
+        itemDto.setQuantity(2);
+        requestDto.setItems(List.of(itemDto));
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of());
+
+        assertThrows(NotFoundException.class, () -> orderService.createOrder(requestDto, userAuth));
     }
 
     @Test
@@ -252,7 +486,7 @@ class OrderServiceTest {
         inactiveProduct.setPrice(BigDecimal.TEN);
         inactiveProduct.setStock(100);
         inactiveProduct.setActive(false);
-        when(catalogClient.getProduct(1L, "test-token")).thenReturn(inactiveProduct);
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, inactiveProduct));
 
         assertThrows(ValidationException.class, () -> orderService.createOrder(requestDto, userAuth));
     }
@@ -264,7 +498,10 @@ class OrderServiceTest {
         itemDto.setProductId(1L);
         itemDto.setQuantity(200);
         requestDto.setItems(List.of(itemDto));
-        when(catalogClient.getProduct(1L, "test-token")).thenReturn(productDto);
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, productDto));
+
+        when(catalogClient.reserveStock(Map.of(1L, -200)))
+                .thenThrow(new ValidationException("Insufficient stock for product 1"));
 
         assertThrows(ValidationException.class, () -> orderService.createOrder(requestDto, userAuth));
     }
@@ -275,13 +512,13 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(1L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findWithItemsById(1L)).thenReturn(Optional.of(order));
         when(orderMapper.toDto(any())).thenReturn(new OrderDto());
 
         OrderDto result = orderService.getOrder(1L, userAuth);
 
         assertThat(result).isNotNull();
-        verify(orderRepository).findById(1L);
+        verify(orderRepository).findWithItemsById(1L);
     }
 
     @Test
@@ -289,7 +526,7 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(999L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findWithItemsById(1L)).thenReturn(Optional.of(order));
 
         assertThrows(ValidationException.class, () -> orderService.getOrder(1L, userAuth));
     }
@@ -299,18 +536,18 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(999L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findWithItemsById(1L)).thenReturn(Optional.of(order));
         when(orderMapper.toDto(any())).thenReturn(new OrderDto());
 
         OrderDto result = orderService.getOrder(1L, adminAuth);
 
         assertThat(result).isNotNull();
-        verify(orderRepository).findById(1L);
+        verify(orderRepository).findWithItemsById(1L);
     }
 
     @Test
     void getOrder_shouldThrowNotFoundException() {
-        when(orderRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderRepository.findWithItemsById(1L)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> orderService.getOrder(1L, userAuth));
     }
@@ -321,16 +558,15 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(1L);
+        order.setTotalAmount(BigDecimal.TEN);
         order.setStatus(OrderStatus.NEW);
         order.setItems(new ArrayList<>());
         OrderItem item = new OrderItem();
         item.setProductId(1L);
         item.setQuantity(2);
         order.getItems().add(item);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(catalogClient.getProduct(1L, "test-token")).thenReturn(productDto);
-        when(catalogClient.updateStock(1L, 2, "test-token")).thenReturn(productDto);
-        when(catalogClient.updateStock(1L, -3, "test-token")).thenReturn(productDto);
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, productDto));
         when(orderRepository.save(any())).thenReturn(order);
         when(orderMapper.toDto(any())).thenReturn(new OrderDto());
         OrderRequestDto requestDto = new OrderRequestDto();
@@ -342,8 +578,35 @@ class OrderServiceTest {
         OrderDto result = orderService.updateOrder(1L, requestDto, userAuth);
 
         assertThat(result).isNotNull();
-        verify(catalogClient).updateStock(1L, 2, "test-token"); // Откат
-        verify(catalogClient).updateStock(1L, -3, "test-token"); // Новый
+        verify(catalogClient).reserveStock(Map.of(1L, -1)); // Откат 2 и резерв 3 одной дельтой
+    }
+
+    @Test
+    void updateOrder_shouldCountReleasedStock_whenCheckingAvailability() {
+        Order order = new Order();
+        order.setId(1L);
+        order.setUserId(1L);
+        order.setTotalAmount(BigDecimal.TEN);
+        order.setStatus(OrderStatus.NEW);
+        order.setItems(new ArrayList<>());
+        OrderItem item = new OrderItem();
+        item.setProductId(1L);
+        item.setQuantity(5);
+        order.getItems().add(item);
+        productDto.setStock(0);
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, productDto));
+        when(orderRepository.save(any())).thenReturn(order);
+        when(orderMapper.toDto(any())).thenReturn(new OrderDto());
+        OrderRequestDto requestDto = new OrderRequestDto();
+        OrderItemRequestDto itemDto = new OrderItemRequestDto();
+        itemDto.setProductId(1L);
+        itemDto.setQuantity(5);
+        requestDto.setItems(List.of(itemDto));
+
+        orderService.updateOrder(1L, requestDto, userAuth);
+
+        verify(catalogClient, never()).reserveStock(any()); // нетто-дельта нулевая
     }
 
     @Test
@@ -367,7 +630,7 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(999L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         OrderRequestDto requestDto = new OrderRequestDto();
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
@@ -384,7 +647,7 @@ class OrderServiceTest {
         order.setId(1L);
         order.setUserId(1L);
         order.setStatus(OrderStatus.COMPLETED);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         OrderRequestDto requestDto = new OrderRequestDto();
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
@@ -397,7 +660,7 @@ class OrderServiceTest {
 
     @Test
     void updateOrder_shouldThrowNotFoundException() {
-        when(orderRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.empty());
 
         OrderRequestDto requestDto = new OrderRequestDto();
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
@@ -415,14 +678,14 @@ class OrderServiceTest {
         order.setUserId(1L);
         order.setStatus(OrderStatus.NEW);
         order.setItems(new ArrayList<>());
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
         ProductDto inactiveProduct = new ProductDto();
         inactiveProduct.setId(1L);
         inactiveProduct.setName("Product");
         inactiveProduct.setPrice(BigDecimal.TEN);
         inactiveProduct.setStock(100);
         inactiveProduct.setActive(false);
-        when(catalogClient.getProduct(1L, "test-token")).thenReturn(inactiveProduct);
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, inactiveProduct));
 
         OrderRequestDto requestDto = new OrderRequestDto();
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
@@ -440,14 +703,16 @@ class OrderServiceTest {
         order.setUserId(1L);
         order.setStatus(OrderStatus.NEW);
         order.setItems(new ArrayList<>());
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(catalogClient.getProduct(1L, "test-token")).thenReturn(productDto);
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, productDto));
 
         OrderRequestDto requestDto = new OrderRequestDto();
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
         itemDto.setProductId(1L);
         itemDto.setQuantity(200);
         requestDto.setItems(List.of(itemDto));
+        when(catalogClient.reserveStock(Map.of(1L, -200)))
+                .thenThrow(new ValidationException("Insufficient stock for product 1"));
 
         assertThrows(ValidationException.class, () -> orderService.updateOrder(1L, requestDto, userAuth));
     }
@@ -458,14 +723,21 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(1L);
+        order.setTotalAmount(BigDecimal.TEN);
         order.setStatus(OrderStatus.NEW);
-        order.setItems(List.of(new OrderItem()));
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        OrderItem item = new OrderItem();
+        item.setProductId(1L);
+        item.setQuantity(2);
+        order.setItems(List.of(item));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         orderService.deleteOrder(1L, userAuth);
 
+        verify(catalogClient).reserveStock(Map.of(1L, 2));
         verify(orderItemRepository).deleteAll(any());
         verify(orderRepository).delete(any());
+        verify(statsRepository).apply(1L, "NEW", -1, BigDecimal.TEN.negate());
+        verify(salesRollupService).markDirty(order.getCreatedAt());
     }
 
     @Test
@@ -473,7 +745,7 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(999L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         assertThrows(ValidationException.class, () -> orderService.deleteOrder(1L, userAuth));
     }
@@ -484,14 +756,14 @@ class OrderServiceTest {
         order.setId(1L);
         order.setUserId(1L);
         order.setStatus(OrderStatus.COMPLETED);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         assertThrows(ValidationException.class, () -> orderService.deleteOrder(1L, userAuth));
     }
 
     @Test
     void deleteOrder_shouldThrowNotFoundException() {
-        when(orderRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> orderService.deleteOrder(1L, userAuth));
     }
@@ -502,7 +774,9 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(999L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        order.setTotalAmount(BigDecimal.TEN);
+        order.setStatus(OrderStatus.NEW);
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
         when(orderRepository.save(any())).thenReturn(order);
         OrderDto orderDto = new OrderDto();
         orderDto.setId(1L);
@@ -514,6 +788,8 @@ class OrderServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getStatus()).isEqualTo(String.valueOf(OrderStatus.COMPLETED));
         verify(orderRepository).save(any());
+        verify(statsRepository).apply(999L, "NEW", -1, BigDecimal.TEN.negate());
+        verify(statsRepository).apply(999L, "COMPLETED", 1, BigDecimal.TEN);
     }
 
     @Test
@@ -521,14 +797,14 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(1L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         assertThrows(AccessDeniedException.class, () -> orderService.updateStatus(1L, "CONFIRMED", userAuth));
     }
 
     @Test
     void updateStatus_shouldThrowNotFoundException() {
-        when(orderRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> orderService.updateStatus(1L, "CONFIRMED", adminAuth));
     }
@@ -538,7 +814,7 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(999L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         assertThrows(IllegalArgumentException.class, () -> orderService.updateStatus(1L, "INVALID", adminAuth));
     }
@@ -549,11 +825,11 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(1L);
+        order.setTotalAmount(BigDecimal.TEN);
         order.setStatus(OrderStatus.NEW);
         order.setItems(new ArrayList<>());
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(catalogClient.getProduct(1L, "test-token")).thenReturn(productDto);
-        when(catalogClient.updateStock(1L, -2, "test-token")).thenReturn(productDto);
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, productDto));
         when(orderRepository.save(any())).thenReturn(order);
         when(orderMapper.toDto(any())).thenReturn(new OrderDto());
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
@@ -564,7 +840,7 @@ class OrderServiceTest {
 
         assertThat(result).isNotNull();
         verify(orderItemRepository).save(any());
-        verify(catalogClient).updateStock(1L, -2, "test-token");
+        verify(catalogClient).reserveStock(Map.of(1L, -2));
     }
 
     @Test
@@ -572,7 +848,7 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(999L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
         itemDto.setProductId(1L);
@@ -587,7 +863,7 @@ class OrderServiceTest {
         order.setId(1L);
         order.setUserId(1L);
         order.setStatus(OrderStatus.COMPLETED);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
         itemDto.setProductId(1L);
@@ -598,7 +874,7 @@ class OrderServiceTest {
 
     @Test
     void addOrderItem_shouldThrowNotFoundException() {
-        when(orderRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.empty());
 
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
         itemDto.setProductId(1L);
@@ -613,14 +889,14 @@ class OrderServiceTest {
         order.setId(1L);
         order.setUserId(1L);
         order.setStatus(OrderStatus.NEW);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
         ProductDto inactiveProduct = new ProductDto();
         inactiveProduct.setId(1L);
         inactiveProduct.setName("Product");
         inactiveProduct.setPrice(BigDecimal.TEN);
         inactiveProduct.setStock(100);
         inactiveProduct.setActive(false);
-        when(catalogClient.getProduct(1L, "test-token")).thenReturn(inactiveProduct);
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, inactiveProduct));
 
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
         itemDto.setProductId(1L);
@@ -635,13 +911,16 @@ class OrderServiceTest {
         order.setId(1L);
         order.setUserId(1L);
         order.setStatus(OrderStatus.NEW);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(catalogClient.getProduct(1L, "test-token")).thenReturn(productDto);
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
+        when(catalogClient.getProducts(List.of(1L), "test-token")).thenReturn(Map.of(1L, productDto));
 
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
         itemDto.setProductId(1L);
         itemDto.setQuantity(200);
 
+        when(catalogClient.reserveStock(Map.of(1L, -200)))
+                .thenThrow(new ValidationException("Insufficient stock for product 1"));
+
         assertThrows(ValidationException.class, () -> orderService.addOrderItem(1L, itemDto, userAuth));
     }
 
@@ -651,16 +930,15 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(1L);
+        order.setTotalAmount(BigDecimal.TEN);
         order.setStatus(OrderStatus.NEW);
         OrderItem item = new OrderItem();
         item.setId(1L);
         item.setProductId(1L);
         item.setQuantity(2);
         order.setItems(new ArrayList<>(List.of(item)));
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
         when(catalogClient.getProduct(1L, "test-token")).thenReturn(productDto);
-        when(catalogClient.updateStock(1L, 2, "test-token")).thenReturn(productDto);
-        when(catalogClient.updateStock(1L, -3, "test-token")).thenReturn(productDto);
         when(orderRepository.save(any())).thenReturn(order);
         when(orderMapper.toDto(any())).thenReturn(new OrderDto());
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
@@ -671,6 +949,32 @@ class OrderServiceTest {
 
         assertThat(result).isNotNull();
         verify(orderItemRepository).save(any());
+        verify(catalogClient).reserveStock(Map.of(1L, -1)); // Откат 2 и резерв 3 одним вызовом
+    }
+
+    @Test
+    void updateOrderItem_shouldNotChangeItem_whenReservationFails() {
+        Order order = new Order();
+        order.setId(1L);
+        order.setUserId(1L);
+        order.setTotalAmount(BigDecimal.TEN);
+        order.setStatus(OrderStatus.NEW);
+        OrderItem item = new OrderItem();
+        item.setId(1L);
+        item.setProductId(1L);
+        item.setQuantity(2);
+        order.setItems(new ArrayList<>(List.of(item)));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
+        when(catalogClient.getProduct(1L, "test-token")).thenReturn(productDto);
+        when(catalogClient.reserveStock(Map.of(1L, -198)))
+                .thenThrow(new ValidationException("Insufficient stock for product 1"));
+        OrderItemRequestDto itemDto = new OrderItemRequestDto();
+        itemDto.setProductId(1L);
+        itemDto.setQuantity(200);
+
+        assertThrows(ValidationException.class, () -> orderService.updateOrderItem(1L, 1L, itemDto, userAuth));
+        assertThat(item.getQuantity()).isEqualTo(2);
+        verify(orderItemRepository, never()).save(any());
     }
 
     @Test
@@ -678,7 +982,7 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(999L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
         itemDto.setProductId(1L);
@@ -693,7 +997,7 @@ class OrderServiceTest {
         order.setId(1L);
         order.setUserId(1L);
         order.setStatus(OrderStatus.COMPLETED);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
         itemDto.setProductId(1L);
@@ -704,7 +1008,7 @@ class OrderServiceTest {
 
     @Test
     void updateOrderItem_shouldThrowNotFoundException_forOrder() {
-        when(orderRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.empty());
 
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
         itemDto.setProductId(1L);
@@ -720,7 +1024,7 @@ class OrderServiceTest {
         order.setUserId(1L);
         order.setStatus(OrderStatus.NEW);
         order.setItems(new ArrayList<>());
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         OrderItemRequestDto itemDto = new OrderItemRequestDto();
         itemDto.setProductId(1L);
@@ -740,7 +1044,7 @@ class OrderServiceTest {
         item.setProductId(1L);
         item.setQuantity(2);
         order.setItems(new ArrayList<>(List.of(item)));
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
         ProductDto inactiveProduct = new ProductDto();
         inactiveProduct.setId(1L);
         inactiveProduct.setName("Product");
@@ -762,14 +1066,14 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(1L);
+        order.setTotalAmount(BigDecimal.TEN);
         order.setStatus(OrderStatus.NEW);
         OrderItem item = new OrderItem();
         item.setId(1L);
         item.setProductId(1L);
         item.setQuantity(2);
         order.setItems(new ArrayList<>(List.of(item)));
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(catalogClient.updateStock(1L, 2, "test-token")).thenReturn(productDto);
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
         when(orderRepository.save(any())).thenReturn(order);
         when(orderMapper.toDto(any())).thenReturn(new OrderDto());
 
@@ -777,7 +1081,7 @@ class OrderServiceTest {
 
         assertThat(result).isNotNull();
         verify(orderItemRepository).delete(any());
-        verify(catalogClient).updateStock(1L, 2, "test-token");
+        verify(catalogClient).reserveStock(Map.of(1L, 2));
     }
 
     @Test
@@ -785,7 +1089,7 @@ class OrderServiceTest {
         Order order = new Order();
         order.setId(1L);
         order.setUserId(999L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         assertThrows(ValidationException.class, () -> orderService.deleteOrderItem(1L, 1L, userAuth));
     }
@@ -796,14 +1100,14 @@ class OrderServiceTest {
         order.setId(1L);
         order.setUserId(1L);
         order.setStatus(OrderStatus.COMPLETED);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         assertThrows(ValidationException.class, () -> orderService.deleteOrderItem(1L, 1L, userAuth));
     }
 
     @Test
     void deleteOrderItem_shouldThrowNotFoundException_forOrder() {
-        when(orderRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> orderService.deleteOrderItem(1L, 1L, userAuth));
     }
@@ -815,7 +1119,7 @@ class OrderServiceTest {
         order.setUserId(1L);
         order.setStatus(OrderStatus.NEW);
         order.setItems(new ArrayList<>());
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findForUpdateById(1L)).thenReturn(Optional.of(order));
 
         assertThrows(NotFoundException.class, () -> orderService.deleteOrderItem(1L, 1L, userAuth));
     }
@@ -0,0 +1,117 @@
+package com.example.service;
+
+import com.example.ApplicationOrder;
+import com.example.dto.order.ProductSalesDto;
+import com.example.dto.order.SalesPointDto;
+import com.example.entity.Order;
+import com.example.entity.OrderItem;
+import com.example.entity.OrderStatus;
+import com.example.exception.ValidationException;
+import com.example.repository.OrderRepository;
+import com.example.repository.SalesRollupDirtyBucketRepository;
+import com.example.repository.SalesRollupRepository;
+import com.example.repository.SalesRollupStateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest(excludeAutoConfiguration = LiquibaseAutoConfiguration.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import(ApplicationOrder.class)
+class SalesRollupServiceTest {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private SalesRollupRepository rollupRepository;
+
+    @Autowired
+    private SalesRollupStateRepository stateRepository;
+
+    @Autowired
+    private SalesRollupDirtyBucketRepository dirtyRepository;
+
+    private SalesRollupService service;
+    private LocalDateTime hour;
+
+    @BeforeEach
+    void setUp() {
+        service = new SalesRollupService(rollupRepository, stateRepository, dirtyRepository, orderRepository, 0);
+        hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(3);
+    }
+
+    @Test
+    void refresh_shouldRollUpChangedHours_andReportsShouldReadRollup() {
+        saveOrder(hour.plusMinutes(5), OrderStatus.PAID, 1L, 2, "10.00");
+        saveOrder(hour.plusMinutes(40), OrderStatus.NEW, 1L, 1, "10.00");
+        saveOrder(hour.plusHours(1).plusMinutes(1), OrderStatus.CANCELLED, 2L, 5, "3.00");
+
+        assertThat(service.refresh()).isEqualTo(2);
+
+        List<ProductSalesDto> top = service.getTopProducts(hour, hour.plusDays(1), null, 10);
+        assertThat(top).hasSize(1);
+        assertThat(top.get(0).getProductId()).isEqualTo(1L);
+        assertThat(top.get(0).getUnitsSold()).isEqualTo(3);
+        assertThat(top.get(0).getRevenue()).isEqualByComparingTo("30.00");
+        assertThat(top.get(0).getOrderCount()).isEqualTo(2);
+        assertThat(service.getProductSales(2L, hour, hour.plusDays(1), "cancelled").getUnitsSold()).isEqualTo(5);
+
+        List<SalesPointDto> series = service.getSeries(hour, hour.plusDays(1), "hour", 1L, null);
+        assertThat(series).extracting(SalesPointDto::getBucketStart).containsExactly(hour);
+        assertThat(service.getSeries(hour, hour.plusDays(1), "day", null, "cancelled"))
+                .extracting(SalesPointDto::getUnitsSold).containsExactly(5L);
+    }
+
+    @Test
+    void refresh_shouldRebuildOnlyHoursChangedAfterWatermark() {
+        Order order = saveOrder(hour.plusMinutes(5), OrderStatus.NEW, 1L, 2, "10.00");
+        service.refresh();
+        assertThat(service.refresh()).isZero();
+
+        order.setStatus(OrderStatus.CANCELLED);
+        order.setUpdatedAt(LocalDateTime.now());
+        orderRepository.saveAndFlush(order);
+
+        assertThat(service.refresh()).isEqualTo(1);
+        assertThat(service.getProductSales(1L, hour, hour.plusHours(1), null).getUnitsSold()).isZero();
+        assertThat(service.getProductSales(1L, hour, hour.plusHours(1), "cancelled").getUnitsSold()).isEqualTo(2);
+    }
+
+    @Test
+    void getSeries_shouldRejectUnknownGranularity() {
+        assertThrows(ValidationException.class,
+                () -> service.getSeries(hour, hour.plusDays(1), "week", null, null));
+    }
+
+    private Order saveOrder(LocalDateTime createdAt, OrderStatus status, Long productId, int quantity, String price) {
+        Order order = new Order();
+        order.setUserId(1L);
+        order.setUserFio("test");
+        order.setStatus(status);
+        order.setCreatedAt(createdAt);
+        order.setUpdatedAt(LocalDateTime.now().minusMinutes(1));
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProductId(productId);
+        item.setProductName("Product " + productId);
+        item.setProductPrice(new BigDecimal(price));
+        item.setQuantity(quantity);
+        item.setLineTotal(new BigDecimal(price).multiply(BigDecimal.valueOf(quantity)));
+        order.getItems().add(item);
+        order.setTotalAmount(item.getLineTotal());
+        return orderRepository.saveAndFlush(order);
+    }
+}